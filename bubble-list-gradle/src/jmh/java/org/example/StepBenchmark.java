@@ -0,0 +1,162 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * One compare-and-swap step of each sorter, taken on its own: a compare that keeps the order and one that swaps,
+ * for an inner node, the head and the array. The swap benchmarks swap the two values back afterwards so every
+ * invocation swaps again. The shared variants run the keep steps from four threads on the same nodes, each thread
+ * with its own sorter and so its own stats slot: they measure the lock and monitor contention on the shared data
+ * that the sorters see once they no longer sleep between steps.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StepBenchmark {
+
+    @State(Scope.Thread)
+    public static class Linked {
+        MyLinkedList list;
+        BubbleSorter sorter;
+        MyLinkedList.Node prev;
+
+        @Setup
+        public void setup() {
+            list = threeNodes();
+            sorter = new BubbleSorter(list, 0);
+            prev = list.getHead();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class SharedLinked {
+        MyLinkedList list;
+
+        @Setup
+        public void setup() {
+            list = threeNodes();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class SharedLinkedSorter {
+        BubbleSorter sorter;
+        MyLinkedList.Node prev;
+
+        @Setup
+        public void setup(SharedLinked shared) {
+            sorter = new BubbleSorter(shared.list, 0);
+            prev = shared.list.getHead();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Array {
+        List<String> list;
+        BubbleSorterForArray sorter;
+
+        @Setup
+        public void setup() {
+            list = new ArrayList<>(List.of("a", "b"));
+            sorter = new BubbleSorterForArray(list, new ReentrantLock(), new WorkSignal(), 0);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class SharedArray {
+        List<String> list;
+        ReentrantLock lock;
+        WorkSignal signal;
+
+        @Setup
+        public void setup() {
+            list = new ArrayList<>(List.of("a", "b"));
+            lock = new ReentrantLock();
+            signal = new WorkSignal();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class SharedArraySorter {
+        BubbleSorterForArray sorter;
+
+        @Setup
+        public void setup(SharedArray shared) {
+            sorter = new BubbleSorterForArray(shared.list, shared.lock, shared.signal, 0);
+        }
+    }
+
+    @Benchmark
+    public Step linkedKept(Linked s) {
+        MyLinkedList.Node current = s.prev.next;
+        return s.sorter.step(s.prev, current, current.next);
+    }
+
+    @Benchmark
+    public Step linkedSwap(Linked s) {
+        MyLinkedList.Node current = s.prev.next;
+        MyLinkedList.Node next = current.next;
+        swapValues(current, next);
+        return s.sorter.step(s.prev, current, next);
+    }
+
+    @Benchmark
+    public Step headKept(Linked s) {
+        MyLinkedList.Node head = s.list.getHead();
+        return s.sorter.stepAtHead(head, head.next);
+    }
+
+    @Benchmark
+    public Step headSwap(Linked s) {
+        MyLinkedList.Node head = s.list.getHead();
+        MyLinkedList.Node next = head.next;
+        swapValues(head, next);
+        return s.sorter.stepAtHead(head, next);
+    }
+
+    @Benchmark
+    public Step arrayKept(Array s) {
+        return s.sorter.step(0);
+    }
+
+    @Benchmark
+    public Step arraySwap(Array s) {
+        Collections.swap(s.list, 0, 1);
+        return s.sorter.step(0);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Step linkedKeptShared(SharedLinkedSorter s) {
+        MyLinkedList.Node current = s.prev.next;
+        return s.sorter.step(s.prev, current, current.next);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Step arrayKeptShared(SharedArraySorter s) {
+        return s.sorter.step(0);
+    }
+
+    private static MyLinkedList threeNodes() {
+        MyLinkedList list = new MyLinkedList();
+        list.addFirst("c");
+        list.addFirst("b");
+        list.addFirst("a");
+        return list;
+    }
+
+    private static void swapValues(MyLinkedList.Node a, MyLinkedList.Node b) {
+        String v = a.value;
+        a.value = b.value;
+        b.value = v;
+    }
+}
\ No newline at end of file
@@ -1,89 +1,133 @@
 package org.example;
 
-public class BubbleSorter extends Thread {
+public class BubbleSorter extends Sorter {
+    private static final int TRAIL = 8;
+
     private final MyLinkedList list;
-    private final int delayMs;
+    // The last few predecessors this cursor passed, with the version each had then, newest at trailTop - 1.
+    private final MyLinkedList.Node[] trail = new MyLinkedList.Node[TRAIL];
+    private final long[] stamps = new long[TRAIL];
+    private int trailTop;
 
     public BubbleSorter(MyLinkedList list, int delayMs) {
+        super(delayMs);
         this.list = list;
-        this.delayMs = delayMs;
     }
 
     @Override
-    public void run() {
-        while (true) {
+    protected void sort() {
+        while (!stopped()) {
+            long generation = list.signal().generation();
             MyLinkedList.Node prev = null;
             MyLinkedList.Node current = list.getHead();
+            boolean clean = true;
+            trailTop = 0;
 
-            while (current != null && current.next != null) {
+            while (current != null) {
                 MyLinkedList.Node next = current.next;
-                boolean swappedHere = false;
-                boolean structureChanged = false;
+                if (next == null) break;
+                Step step = prev != null ? step(prev, current, next) : stepAtHead(current, next);
 
-                if (prev != null) {
-                    synchronized (prev.lock) {
-                        synchronized (current.lock) {
-                            synchronized (next.lock) {
-                                if (prev.next != current || current.next != next) {
-                                    structureChanged = true;
-                                } else {
-                                    Stats.steps.incrementAndGet();
-                                    if (current.value.compareTo(next.value) > 0) {
-                                        current.next = next.next;
-                                        next.next = current;
-                                        prev.next = next;
-                                        swappedHere = true;
-                                    }
-                                }
-                            }
-                        }
-                    }
-                    if (structureChanged) {
-                        prev = null;
+                if (step != Step.KEPT) clean = false;
+                if (step == Step.CONFLICT) {
+                    stats.add(Stats.Counter.CONFLICTS);
+                    boolean atHead = prev == null;
+                    prev = resumePoint();
+                    if (prev == null) {
+                        if (!atHead) stats.add(Stats.Counter.RESTARTS);
                         current = list.getHead();
-                        continue;
-                    }
-                    if (swappedHere) {
-                        prev = prev.next;
-                        current = prev.next;
                     } else {
-                        prev = current;
-                        current = current.next;
-                    }
-                } else {
-                    synchronized (current.lock) {
-                        synchronized (next.lock) {
-                            if (list.getHead() != current || current.next != next) {
-                                structureChanged = true;
-                            } else {
-                                Stats.steps.incrementAndGet();
-                                if (current.value.compareTo(next.value) > 0) {
-                                    current.next = next.next;
-                                    next.next = current;
-                                    list.setHead(next);
-                                    swappedHere = true;
-                                }
-                            }
-                        }
-                    }
-                    if (structureChanged) {
-                        current = list.getHead();
-                        continue;
-                    }
-                    if (swappedHere) {
-                        prev = list.getHead();
-                        current = (prev == null) ? null : prev.next;
-                    } else {
-                        prev = current;
-                        current = current.next;
+                        current = prev.next;
                     }
+                    continue;
                 }
+                // After a swap the old next sits between prev and current, and current still has to be compared.
+                prev = step == Step.SWAPPED ? next : current;
+                if (step == Step.KEPT) current = next;
+                remember(prev);
 
+                if (!pause()) return;
+            }
+            endPass(clean);
+            // A clean pass with nothing inserted since it began: the list is sorted until the next insert.
+            if (clean && !list.signal().awaitWork(generation)) return;
+        }
+    }
+
+    /**
+     * Compares without locking; only a swap locks, and then just prev, current and next, each one taken after
+     * checking it still follows the one before, so the locks are always acquired in list order. A lock that
+     * stays busy is reported as a conflict rather than waited for.
+     */
+    Step step(MyLinkedList.Node prev, MyLinkedList.Node current, MyLinkedList.Node next) {
+        stats.add(Stats.Counter.STEPS);
+        if (current.value.compareTo(next.value) <= 0) return current.next == next ? Step.KEPT : Step.CONFLICT;
+        if (!acquire(prev.lock)) return Step.CONFLICT;
+        try {
+            if (prev.next != current || !acquire(current.lock)) return Step.CONFLICT;
+            try {
+                if (current.next != next || !acquire(next.lock)) return Step.CONFLICT;
                 try {
-                    Thread.sleep(delayMs);
-                } catch (InterruptedException ignored) {
+                    current.next = next.next;
+                    next.next = current;
+                    prev.next = next;
+                    current.version++;
+                    stats.add(Stats.Counter.SWAPS);
+                    return Step.SWAPPED;
+                } finally {
+                    next.lock.unlock();
                 }
+            } finally {
+                current.lock.unlock();
+            }
+        } finally {
+            prev.lock.unlock();
+        }
+    }
+
+    Step stepAtHead(MyLinkedList.Node current, MyLinkedList.Node next) {
+        stats.add(Stats.Counter.STEPS);
+        if (current.value.compareTo(next.value) <= 0) return current.next == next ? Step.KEPT : Step.CONFLICT;
+        if (!acquire(current.lock)) return Step.CONFLICT;
+        try {
+            if (current.next != next || !acquire(next.lock)) return Step.CONFLICT;
+            try {
+                if (!list.swapAtHead(current, next)) return Step.CONFLICT;
+                stats.add(Stats.Counter.SWAPS);
+                return Step.SWAPPED;
+            } finally {
+                next.lock.unlock();
+            }
+        } finally {
+            current.lock.unlock();
+        }
+    }
+
+    private void remember(MyLinkedList.Node node) {
+        if (trailTop == TRAIL) {
+            System.arraycopy(trail, 1, trail, 0, TRAIL - 1);
+            System.arraycopy(stamps, 1, stamps, 0, TRAIL - 1);
+            trailTop--;
+        }
+        trail[trailTop] = node;
+        stamps[trailTop] = node.version;
+        trailTop++;
+    }
+
+    /**
+     * The nearest predecessor that has not moved forward since the cursor passed it, or {@code null} when every
+     * one has and the pass has to go back to the head. Resuming from a node that only moved back repeats a few
+     * compares; resuming from one that moved forward would skip the nodes it jumped.
+     */
+    private MyLinkedList.Node resumePoint() {
+        while (trailTop > 0) {
+            trailTop--;
+            MyLinkedList.Node node = trail[trailTop];
+            if (node.version == stamps[trailTop]) {
+                trailTop++;
+                return node;
             }
         }
+        return null;
     }
 }
\ No newline at end of file
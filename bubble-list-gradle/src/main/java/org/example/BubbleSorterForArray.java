@@ -1,43 +1,59 @@
 package org.example;
 
 import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
 
-public class BubbleSorterForArray extends Thread {
+public class BubbleSorterForArray extends Sorter {
     private final List<String> list;
-    private final int delayMs;
-
-    public BubbleSorterForArray(List<String> list, int delayMs) {
+    private final ReentrantLock lock;
+    private final WorkSignal signal;
+
+    /**
+     * Every access to {@code list} holds {@code lock}, a lock rather than the list's monitor so a sorter waiting on
+     * a virtual thread parks instead of pinning its carrier. Whoever inserts calls {@link WorkSignal#dirty} on
+     * {@code signal} afterwards.
+     */
+    public BubbleSorterForArray(List<String> list, ReentrantLock lock, WorkSignal signal, int delayMs) {
+        super(delayMs);
         this.list = list;
-        this.delayMs = delayMs;
+        this.lock = lock;
+        this.signal = signal;
     }
 
     @Override
-    public void run() {
-        while (true) {
-            int i = 0;
-            while (true) {
-                String left, right;
-
-                synchronized (list) {
-                    int n = list.size();
-                    if (n < 2 || i >= n - 1) break;
-                    Stats.steps.incrementAndGet();
-                    left = list.get(i);
-                    right = list.get(i + 1);
-
-                    if (left.compareTo(right) > 0) {
-                        list.set(i, right);
-                        list.set(i + 1, left);
-                    }
-                }
-
-                try {
-                    Thread.sleep(delayMs);
-                } catch (InterruptedException ignored) {
-                }
-
-                i++;
+    protected void sort() {
+        while (!stopped()) {
+            long generation = signal.generation();
+            boolean clean = true;
+            Step step;
+            for (int i = 0; (step = step(i)) != Step.END; i++) {
+                if (step == Step.SWAPPED) clean = false;
+                if (!pause()) return;
             }
+            endPass(clean);
+            if (clean && !signal.awaitWork(generation)) return;
+        }
+    }
+
+    Step step(int i) {
+        if (!lock.tryLock()) {
+            stats.add(Stats.Counter.CONTENDED);
+            lock.lock();
+        }
+        try {
+            int n = list.size();
+            if (n < 2 || i >= n - 1) return Step.END;
+            stats.add(Stats.Counter.STEPS);
+            String left = list.get(i);
+            String right = list.get(i + 1);
+
+            if (left.compareTo(right) <= 0) return Step.KEPT;
+            list.set(i, right);
+            list.set(i + 1, left);
+            stats.add(Stats.Counter.SWAPS);
+            return Step.SWAPPED;
+        } finally {
+            lock.unlock();
         }
     }
 }
\ No newline at end of file
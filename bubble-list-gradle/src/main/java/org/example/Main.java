@@ -1,46 +1,85 @@
 package org.example;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import java.util.Scanner;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class Main {
     public static void main(String[] args) {
         int numThreads = args.length > 0 ? Integer.parseInt(args[0]) : 2;
         int delayMs = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
         boolean useArray = args.length > 2 && "array".equalsIgnoreCase(args[2]);
+        boolean useStriped = args.length > 2 && "striped".equalsIgnoreCase(args[2]);
+        boolean useVirtual = args.length > 3 && "virtual".equalsIgnoreCase(args[3]);
+        Stats.registerMBean();
 
-        if (useArray) {
-            List<String> list = Collections.synchronizedList(new ArrayList<>());
-            for (int i = 0; i < numThreads; i++) new BubbleSorterForArray(list, delayMs).start();
-            runConsoleForArray(list);
-        } else {
-            MyLinkedList list = new MyLinkedList();
-            for (int i = 0; i < numThreads; i++) new BubbleSorter(list, delayMs).start();
-            runConsoleForLinked(list);
+        // The console returns at end of input; closing the group stops the sorters.
+        try (SorterGroup sorters = new SorterGroup(useVirtual)) {
+            if (useStriped) {
+                StripedArray array = new StripedArray(StripedArray.DEFAULT_SEGMENT_SIZE, numThreads);
+                for (int i = 0; i < numThreads; i++) sorters.start(new OddEvenSorter(array, delayMs));
+                runConsoleForStriped(array);
+            } else if (useArray) {
+                List<String> list = new ArrayList<>();
+                ReentrantLock lock = new ReentrantLock();
+                WorkSignal signal = new WorkSignal();
+                for (int i = 0; i < numThreads; i++) {
+                    sorters.start(new BubbleSorterForArray(list, lock, signal, delayMs));
+                }
+                runConsoleForArray(list, lock, signal);
+            } else {
+                MyLinkedList list = new MyLinkedList();
+                for (int i = 0; i < numThreads; i++) sorters.start(new BubbleSorter(list, delayMs));
+                runConsoleForLinked(list);
+            }
         }
+        printStats();
     }
 
-    private static void runConsoleForArray(List<String> list) {
+    private static void runConsoleForArray(List<String> list, ReentrantLock lock, WorkSignal signal) {
         Scanner sc = new Scanner(System.in);
         System.out.println("Введите строки (пустая строка выводит список и статистику):");
-        while (true) {
+        while (sc.hasNextLine()) {
             String line = sc.nextLine();
             if (line.isEmpty()) {
                 List<String> snap;
-                synchronized (list) {
+                lock.lock();
+                try {
                     snap = new ArrayList<>(list);
+                } finally {
+                    lock.unlock();
                 }
                 for (String s : snap) System.out.println(s);
-                System.out.println("Количество шагов: " + Stats.steps.get());
+                printStats();
                 continue;
             }
             List<String> parts = splitToParts(line);
-            synchronized (list) {
+            lock.lock();
+            try {
                 for (int i = parts.size() - 1; i >= 0; i--) {
                     list.addFirst(parts.get(i));
                 }
+            } finally {
+                lock.unlock();
+            }
+            signal.dirty(parts.size());
+        }
+    }
+
+    private static void runConsoleForStriped(StripedArray array) {
+        Scanner sc = new Scanner(System.in);
+        System.out.println("Введите строки (пустая строка выводит список и статистику):");
+        while (sc.hasNextLine()) {
+            String line = sc.nextLine();
+            if (line.isEmpty()) {
+                for (String s : array.snapshot()) System.out.println(s);
+                printStats();
+                continue;
+            }
+            List<String> parts = splitToParts(line);
+            for (int i = parts.size() - 1; i >= 0; i--) {
+                array.addFirst(parts.get(i));
             }
         }
     }
@@ -48,11 +87,11 @@ public class Main {
     private static void runConsoleForLinked(MyLinkedList list) {
         Scanner sc = new Scanner(System.in);
         System.out.println("Введите строки (пустая строка выводит список и статистику):");
-        while (true) {
+        while (sc.hasNextLine()) {
             String line = sc.nextLine();
             if (line.isEmpty()) {
                 list.printList();
-                System.out.println("Количество шагов: " + Stats.steps.get());
+                printStats();
                 continue;
             }
             List<String> parts = splitToParts(line);
@@ -62,6 +101,11 @@ public class Main {
         }
     }
 
+    private static void printStats() {
+        System.out.println("Количество шагов: " + Stats.total(Stats.Counter.STEPS));
+        for (String line : Stats.summary(32)) System.out.println(line);
+    }
+
     private static java.util.List<String> splitToParts(String line) {
         java.util.List<String> parts = new ArrayList<>();
         int idx = 0;
@@ -1,59 +1,106 @@
 package org.example;
 
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class MyLinkedList implements Iterable<String> {
     public static class Node {
         String value;
-        Node next;
-        final Object lock = new Object();
+        volatile Node next;
+        // Bumped, under lock, whenever the node moves forward; a cursor holding an unchanged stamp can resume here.
+        volatile long version;
+        final ReentrantLock lock = new ReentrantLock();
 
         Node(String value) {
             this.value = value;
         }
     }
 
-    private Node head;
+    private final WorkSignal signal = new WorkSignal();
+    // Taken to change head, never to read it. Every sorter reaches it once a pass, so it is a lock a waiting
+    // virtual thread parks on rather than a monitor that would pin its carrier.
+    private final ReentrantLock headLock = new ReentrantLock();
+    private volatile Node head;
 
     public void addFirst(String value) {
         Node node = new Node(value);
-        synchronized (this) {
+        headLock.lock();
+        try {
             node.next = head;
             head = node;
+        } finally {
+            headLock.unlock();
         }
+        // One new node to bubble into place: one sorter's worth of work.
+        signal.dirty(1);
+    }
+
+    public WorkSignal signal() {
+        return signal;
     }
 
     public Node getHead() {
-        synchronized (this) {
-            return head;
-        }
+        return head;
     }
 
     public void setHead(Node newHead) {
-        synchronized (this) {
+        headLock.lock();
+        try {
             head = newHead;
+        } finally {
+            headLock.unlock();
+        }
+    }
+
+    boolean swapAtHead(Node current, Node next) {
+        headLock.lock();
+        try {
+            if (head != current) return false;
+            current.next = next.next;
+            next.next = current;
+            head = next;
+            current.version++;
+            return true;
+        } finally {
+            headLock.unlock();
         }
     }
 
     public void printList() {
-        Node cur;
-        synchronized (this) {
-            cur = head;
+        Node cur = head;
+        while (cur != null) {
+            Node node = cur;
+            node.lock.lock();
+            try {
+                System.out.println(node.value);
+                cur = node.next;
+            } finally {
+                node.lock.unlock();
+            }
         }
+    }
+
+    public List<String> snapshot() {
+        List<String> values = new ArrayList<>();
+        Node cur = head;
         while (cur != null) {
-            synchronized (cur.lock) {
-                System.out.println(cur.value);
-                cur = cur.next;
+            Node node = cur;
+            node.lock.lock();
+            try {
+                values.add(node.value);
+                cur = node.next;
+            } finally {
+                node.lock.unlock();
             }
         }
+        return values;
     }
 
     @Override
     public Iterator<String> iterator() {
-        Node start;
-        synchronized (this) {
-            start = head;
-        }
+        Node start = head;
         return new Iterator<>() {
             Node node = start;
 
@@ -0,0 +1,32 @@
+package org.example;
+
+import java.util.concurrent.BrokenBarrierException;
+
+public class OddEvenSorter extends Sorter {
+    private final StripedArray array;
+
+    public OddEvenSorter(StripedArray array, int delayMs) {
+        super(delayMs);
+        this.array = array;
+    }
+
+    @Override
+    protected void sort() {
+        try {
+            while (!stopped()) {
+                // A pass here is this thread's share of one phase.
+                boolean clean = true;
+                int k;
+                while ((k = array.claim()) >= 0) {
+                    if (array.sortSegment(k, stats)) clean = false;
+                    if (!pause()) return;
+                }
+                endPass(clean);
+                array.awaitPhase();
+                if (!array.awaitWork()) return;
+            }
+        } catch (InterruptedException | BrokenBarrierException e) {
+            // Interrupted, or another sorter was: either way the phases cannot go on.
+        }
+    }
+}
\ No newline at end of file
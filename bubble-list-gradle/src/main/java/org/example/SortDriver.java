@@ -0,0 +1,260 @@
+package org.example;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+public class SortDriver {
+    private static final long POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(200);
+
+    private String[] modes = {"linked", "array", "striped"};
+    private int segmentSize = StripedArray.DEFAULT_SEGMENT_SIZE;
+    private String[] kinds = {"platform"};
+    private int[] threadCounts = {1, 2, 4, 8};
+    private int count = 2000;
+    private int rate = 0;
+    private int length = 8;
+    private String distribution = "uniform";
+    private long seed = 42;
+    private int timeoutSecs = 60;
+
+    public static void main(String[] args) {
+        SortDriver driver = new SortDriver();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--mode":
+                    driver.modes = args[++i].split(",");
+                    break;
+                case "--kinds":
+                    driver.kinds = args[++i].split(",");
+                    break;
+                case "--segment":
+                    driver.segmentSize = Integer.parseInt(args[++i]);
+                    break;
+                case "--threads":
+                    String[] counts = args[++i].split(",");
+                    driver.threadCounts = new int[counts.length];
+                    for (int j = 0; j < counts.length; j++) driver.threadCounts[j] = Integer.parseInt(counts[j].trim());
+                    break;
+                case "--count":
+                    driver.count = Integer.parseInt(args[++i]);
+                    break;
+                case "--rate":
+                    driver.rate = Integer.parseInt(args[++i]);
+                    break;
+                case "--length":
+                    driver.length = Integer.parseInt(args[++i]);
+                    break;
+                case "--distribution":
+                    driver.distribution = args[++i];
+                    break;
+                case "--seed":
+                    driver.seed = Long.parseLong(args[++i]);
+                    break;
+                case "--timeout-secs":
+                    driver.timeoutSecs = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    System.err.println("Неизвестный аргумент: " + args[i]);
+                    System.err.println("Использование: [--mode linked,array,striped] [--kinds platform,virtual] [--segment N]"
+                            + " [--threads 1,2,4,8] [--count N] [--rate вставок/с, 0 = без паузы] [--length N]"
+                            + " [--distribution uniform|ascending|descending|duplicates] [--seed N] [--timeout-secs N]");
+                    return;
+            }
+        }
+        driver.run();
+    }
+
+    private void run() {
+        List<String> keys = keys();
+        System.out.printf("%d строк длины %d, распределение %s, темп %s%n", count, length, distribution,
+                rate > 0 ? rate + " вставок/с" : "без паузы");
+        System.out.printf("%-7s %-8s %7s %12s %14s %12s %10s %10s %10s %9s %10s %11s%n", "режим", "потоки",
+                "потоков", "до сорт., мс", "шагов", "шагов/с", "конфликтов", "рестартов", "блокировок", "проходов",
+                "CPU после,%", "вставка, мс");
+        for (String m : modes) {
+            for (String kind : kinds) {
+                boolean virtual = switch (kind) {
+                    case "platform" -> false;
+                    case "virtual" -> true;
+                    default -> throw new IllegalArgumentException("Неизвестный тип потоков: " + kind);
+                };
+                for (int threads : threadCounts) {
+                    Result r = switch (m) {
+                        case "linked" -> runLinked(keys, threads, virtual);
+                        case "array" -> runArray(keys, threads, virtual);
+                        case "striped" -> runStriped(keys, threads, virtual);
+                        default -> throw new IllegalArgumentException("Неизвестный режим: " + m);
+                    };
+                    System.out.printf("%-7s %-8s %7d %12s %14d %12.0f %10d %10d %10d %9d %10.1f %11.2f%n", m, kind,
+                            threads, r.sorted ? String.format("%.1f", r.nanos / 1e6) : "таймаут",
+                            r.steps, r.steps / (r.nanos / 1e9), r.conflicts, r.restarts, r.contended, r.passes,
+                            r.idleCpu, r.insertMs);
+                }
+            }
+        }
+    }
+
+    private Result runLinked(List<String> keys, int threads, boolean virtual) {
+        MyLinkedList list = new MyLinkedList();
+        List<Sorter> sorters = new ArrayList<>();
+        for (int i = 0; i < threads; i++) sorters.add(new BubbleSorter(list, 0));
+        return measure(sorters, virtual, keys, list::addFirst, list::snapshot);
+    }
+
+    private Result runArray(List<String> keys, int threads, boolean virtual) {
+        List<String> list = new ArrayList<>();
+        List<Sorter> sorters = new ArrayList<>();
+        ReentrantLock lock = new ReentrantLock();
+        WorkSignal signal = new WorkSignal();
+        for (int i = 0; i < threads; i++) sorters.add(new BubbleSorterForArray(list, lock, signal, 0));
+        return measure(sorters, virtual, keys, key -> {
+            lock.lock();
+            try {
+                list.addFirst(key);
+            } finally {
+                lock.unlock();
+            }
+            signal.dirty(1);
+        }, () -> {
+            lock.lock();
+            try {
+                return new ArrayList<>(list);
+            } finally {
+                lock.unlock();
+            }
+        });
+    }
+
+    private Result runStriped(List<String> keys, int threads, boolean virtual) {
+        StripedArray array = new StripedArray(segmentSize, threads);
+        List<Sorter> sorters = new ArrayList<>();
+        for (int i = 0; i < threads; i++) sorters.add(new OddEvenSorter(array, 0));
+        return measure(sorters, virtual, keys, array::addFirst, array::snapshot);
+    }
+
+    private Result measure(List<Sorter> sorters, boolean virtual, List<String> keys, Consumer<String> insert,
+                           Supplier<List<String>> snapshot) {
+        long steps = Stats.total(Stats.Counter.STEPS);
+        long conflicts = Stats.total(Stats.Counter.CONFLICTS);
+        long restarts = Stats.total(Stats.Counter.RESTARTS);
+        long contended = Stats.contended();
+        long passes = Stats.total(Stats.Counter.PASSES);
+        SorterGroup group = new SorterGroup(virtual);
+        for (Sorter sorter : sorters) group.start(sorter);
+
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.SECONDS.toNanos(timeoutSecs);
+        long interval = rate > 0 ? TimeUnit.SECONDS.toNanos(1) / rate : 0;
+        for (int i = 0; i < keys.size(); i++) {
+            if (interval > 0) {
+                long wait = start + i * interval - System.nanoTime();
+                if (wait > 0) LockSupport.parkNanos(wait);
+            }
+            insert.accept(keys.get(i));
+        }
+
+        boolean sorted = awaitSorted(snapshot, keys.size(), deadline);
+        long nanos = System.nanoTime() - start;
+        steps = Stats.total(Stats.Counter.STEPS) - steps;
+        conflicts = Stats.total(Stats.Counter.CONFLICTS) - conflicts;
+        restarts = Stats.total(Stats.Counter.RESTARTS) - restarts;
+        contended = Stats.contended() - contended;
+        passes = Stats.total(Stats.Counter.PASSES) - passes;
+
+        // Once sorted the sorters should be parked: the process should burn next to no CPU, and one more key,
+        // larger than all the others, should be carried from the head to the tail promptly.
+        double idleCpu = Double.NaN;
+        double insertMs = Double.NaN;
+        if (sorted) {
+            long cpu = processCpuNanos();
+            long idleStart = System.nanoTime();
+            LockSupport.parkNanos(IDLE_NANOS);
+            idleCpu = 100.0 * (processCpuNanos() - cpu) / (System.nanoTime() - idleStart);
+
+            long insertStart = System.nanoTime();
+            insert.accept("{".repeat(length));
+            if (awaitSorted(snapshot, keys.size() + 1, insertStart + TimeUnit.SECONDS.toNanos(timeoutSecs))) {
+                insertMs = (System.nanoTime() - insertStart) / 1e6;
+            }
+        }
+
+        group.close();
+        return new Result(sorted, nanos, steps, conflicts, restarts, contended, passes, idleCpu, insertMs);
+    }
+
+    private static boolean awaitSorted(Supplier<List<String>> snapshot, int size, long deadline) {
+        while (System.nanoTime() < deadline) {
+            // A snapshot taken while values are moving may look sorted; no swap during the check means it is.
+            // Striped inserts sit in the staging buffer until the next phase, so the size is checked too.
+            long swaps = Stats.total(Stats.Counter.SWAPS);
+            List<String> snap = snapshot.get();
+            if (snap.size() == size && isSorted(snap) && Stats.total(Stats.Counter.SWAPS) == swaps) return true;
+            LockSupport.parkNanos(POLL_NANOS);
+        }
+        return false;
+    }
+
+    private static long processCpuNanos() {
+        return ((com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean())
+                .getProcessCpuTime();
+    }
+
+    private List<String> keys() {
+        Random random = new Random(seed);
+        List<String> keys = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            switch (distribution) {
+                case "uniform":
+                    keys.add(randomKey(random));
+                    break;
+                // Inserts go to the head, so the list reads in the reverse of insertion order.
+                case "ascending":
+                    keys.add(key(count - 1 - i));
+                    break;
+                case "descending":
+                    keys.add(key(i));
+                    break;
+                case "duplicates":
+                    keys.add(key(random.nextInt(16)));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Неизвестное распределение: " + distribution);
+            }
+        }
+        return keys;
+    }
+
+    private String randomKey(Random random) {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) chars[i] = (char) ('a' + random.nextInt(26));
+        return new String(chars);
+    }
+
+    private String key(int n) {
+        char[] chars = new char[length];
+        for (int i = length - 1; i >= 0; i--) {
+            chars[i] = (char) ('a' + n % 26);
+            n /= 26;
+        }
+        return new String(chars);
+    }
+
+    private static boolean isSorted(List<String> values) {
+        for (int i = 1; i < values.size(); i++) {
+            if (values.get(i - 1).compareTo(values.get(i)) > 0) return false;
+        }
+        return true;
+    }
+
+    private record Result(boolean sorted, long nanos, long steps, long conflicts, long restarts, long contended,
+                          long passes, double idleCpu, double insertMs) {
+    }
+}
\ No newline at end of file
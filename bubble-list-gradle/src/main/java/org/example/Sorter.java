@@ -0,0 +1,72 @@
+package org.example;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A sorter task: runs until its thread is interrupted, which is how {@link SorterGroup} stops it, on a platform
+ * or a virtual thread alike.
+ */
+public abstract class Sorter implements Runnable {
+    private static final int SPINS = 4;
+    private static final int ATTEMPTS = 16;
+
+    protected final int delayMs;
+    protected final Stats.Slot stats = Stats.newSlot();
+
+    protected Sorter(int delayMs) {
+        this.delayMs = delayMs;
+    }
+
+    @Override
+    public final void run() {
+        stats.started();
+        try {
+            sort();
+        } finally {
+            stats.finished();
+        }
+    }
+
+    protected abstract void sort();
+
+    protected static boolean stopped() {
+        return Thread.currentThread().isInterrupted();
+    }
+
+    /**
+     * Takes the lock without blocking in it: spins briefly, then yields between attempts, which on a virtual
+     * thread hands the carrier to another sorter instead of pinning it. Gives up after a bounded number of
+     * attempts so the caller can back out and release what it already holds.
+     */
+    protected boolean acquire(ReentrantLock lock) {
+        for (int attempt = 0; ; attempt++) {
+            if (lock.tryLock()) return true;
+            stats.add(Stats.Counter.CONTENDED);
+            if (attempt == ATTEMPTS) return false;
+            if (attempt < SPINS) {
+                Thread.onSpinWait();
+            } else {
+                Thread.yield();
+            }
+        }
+    }
+
+    /**
+     * Ends a pass. A virtual thread also yields here: without a delay a sorter never blocks, and would otherwise
+     * keep its carrier from every other virtual thread.
+     */
+    protected void endPass(boolean clean) {
+        stats.endPass(clean);
+        if (Thread.currentThread().isVirtual()) Thread.yield();
+    }
+
+    protected boolean pause() {
+        if (delayMs <= 0) return !stopped();
+        try {
+            Thread.sleep(delayMs);
+            return true;
+        } catch (InterruptedException e) {
+            return false;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,36 @@
+package org.example;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs sorters one thread per task, on platform or virtual threads. {@link #close()} interrupts them all and
+ * waits for them to return; if the closing thread is interrupted meanwhile it stops waiting and keeps its
+ * interrupt status.
+ */
+public class SorterGroup implements AutoCloseable {
+    private final ExecutorService executor;
+
+    public SorterGroup(boolean virtual) {
+        executor = Executors.newThreadPerTaskExecutor(virtual
+                ? Thread.ofVirtual().name("vsorter-", 0).factory()
+                : Thread.ofPlatform().name("sorter-", 0).factory());
+    }
+
+    public void start(Sorter sorter) {
+        executor.execute(sorter);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        try {
+            while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+                System.err.println("Ожидание остановки сортировщиков...");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
\ No newline at end of file
@@ -1,7 +1,230 @@
 package org.example;
 
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 
-public final class Stats {
-    public static final AtomicLong steps = new AtomicLong(0);
+/**
+ * Sorter counters, one {@link Slot} per sorter thread so a step never writes a cache line another sorter
+ * writes. Totals and rates are summed when read: by the console summary, by {@link SortDriver} and over JMX as
+ * {@code org.example:type=Stats}. Contention is the number of times a sorter found a lock busy, plus, for
+ * platform threads, the JVM's own count of times the thread blocked on a monitor. A slot joins the totals when its
+ * sorter starts running, and a finished sorter's slot is folded into the retired totals and dropped, so reads only
+ * walk the sorters still running and a sorter that never runs leaves nothing behind.
+ */
+public final class Stats implements StatsMXBean {
+    public enum Counter { STEPS, SWAPS, CONFLICTS, RESTARTS, CONTENDED, PASSES, CLEAN_PASSES }
+
+    private static final Counter[] COUNTERS = Counter.values();
+    // Longs of padding on each side, so no two slots share a cache line.
+    private static final int PAD = 8;
+    private static final List<Slot> slots = new CopyOnWriteArrayList<>();
+    private static final AtomicLongArray retired = new AtomicLongArray(COUNTERS.length);
+    private static final AtomicLong retiredContended = new AtomicLong();
+    private static final AtomicLong retiredPassesToSorted = new AtomicLong();
+    private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+    private Stats() {
+    }
+
+    public static Slot newSlot() {
+        return new Slot();
+    }
+
+    // A slot retiring during a read may be counted by it twice or not at all; the next read is exact again.
+    public static long total(Counter counter) {
+        long sum = retired.get(counter.ordinal());
+        for (Slot slot : slots) sum += slot.get(counter);
+        return sum;
+    }
+
+    public static long contended() {
+        long sum = retiredContended.get();
+        for (Slot slot : slots) sum += slot.contended();
+        return sum;
+    }
+
+    public static long passesToSorted() {
+        long max = retiredPassesToSorted.get();
+        for (Slot slot : slots) max = Math.max(max, slot.passesToSorted);
+        return max;
+    }
+
+    private static void retire(Slot slot) {
+        for (Counter counter : COUNTERS) retired.addAndGet(counter.ordinal(), slot.get(counter));
+        retiredContended.addAndGet(slot.contended());
+        retiredPassesToSorted.accumulateAndGet(slot.passesToSorted, Math::max);
+        slots.remove(slot);
+    }
+
+    /**
+     * Steps per second of the sorters still running.
+     */
+    public static double stepsPerSecond() {
+        double sum = 0;
+        for (Slot slot : slots) {
+            if (slot.endNanos == 0) sum += slot.stepsPerSecond();
+        }
+        return sum;
+    }
+
+    public static void registerMBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer()
+                    .registerMBean(new Stats(), new ObjectName("org.example:type=Stats"));
+        } catch (Exception e) {
+            System.err.println("Не удалось зарегистрировать MBean: " + e.getMessage());
+        }
+    }
+
+    /**
+     * A table of the running sorters, at most {@code limit} of them, and a total line that includes finished ones.
+     */
+    public static List<String> summary(int limit) {
+        List<String> lines = new ArrayList<>();
+        lines.add(String.format("%-12s %12s %12s %10s %10s %10s %10s %9s %8s", "поток", "шагов", "шагов/с",
+                "обменов", "конфликтов", "рестартов", "блокировок", "проходов", "до сорт."));
+        int live = 0;
+        for (Slot slot : slots) {
+            if (slot.endNanos != 0 || slot.startNanos == 0) continue;
+            if (live++ < limit) lines.add(slot.toString());
+        }
+        if (live > limit) lines.add("... ещё " + (live - limit));
+        lines.add(String.format("%-12s %12d %12.0f %10d %10d %10d %10d %9d %8d", "всего", total(Counter.STEPS),
+                stepsPerSecond(), total(Counter.SWAPS), total(Counter.CONFLICTS), total(Counter.RESTARTS),
+                contended(), total(Counter.PASSES), passesToSorted()));
+        return lines;
+    }
+
+    @Override
+    public long getSteps() {
+        return total(Counter.STEPS);
+    }
+
+    @Override
+    public long getSwaps() {
+        return total(Counter.SWAPS);
+    }
+
+    @Override
+    public long getConflicts() {
+        return total(Counter.CONFLICTS);
+    }
+
+    @Override
+    public long getRestarts() {
+        return total(Counter.RESTARTS);
+    }
+
+    @Override
+    public long getContended() {
+        return contended();
+    }
+
+    @Override
+    public long getPasses() {
+        return total(Counter.PASSES);
+    }
+
+    @Override
+    public long getCleanPasses() {
+        return total(Counter.CLEAN_PASSES);
+    }
+
+    @Override
+    public long getPassesToSorted() {
+        return passesToSorted();
+    }
+
+    @Override
+    public double getStepsPerSecond() {
+        return stepsPerSecond();
+    }
+
+    @Override
+    public String[] getPerThread() {
+        return summary(Integer.MAX_VALUE).toArray(new String[0]);
+    }
+
+    public static final class Slot {
+        private volatile Thread thread;
+        // Written only by the owning thread, so an increment is a plain read and an opaque write.
+        private final AtomicLongArray counts = new AtomicLongArray(PAD + COUNTERS.length + PAD);
+        private volatile long startNanos;
+        private volatile long endNanos;
+        private volatile long blocked;
+        private volatile long passesToSorted;
+        private long dirtyPasses;
+
+        private Slot() {
+        }
+
+        public void started() {
+            thread = Thread.currentThread();
+            startNanos = System.nanoTime();
+            slots.add(this);
+        }
+
+        public void finished() {
+            contended();
+            endNanos = System.nanoTime();
+            retire(this);
+        }
+
+        public void add(Counter counter) {
+            int i = PAD + counter.ordinal();
+            counts.setOpaque(i, counts.getPlain(i) + 1);
+        }
+
+        /**
+         * Ends a pass; a clean one (no swap, no conflict) after dirty ones records how many passes it took.
+         */
+        public void endPass(boolean clean) {
+            add(Counter.PASSES);
+            if (!clean) {
+                dirtyPasses++;
+                return;
+            }
+            add(Counter.CLEAN_PASSES);
+            if (dirtyPasses > 0) {
+                passesToSorted = dirtyPasses + 1;
+                dirtyPasses = 0;
+            }
+        }
+
+        public long get(Counter counter) {
+            return counts.getOpaque(PAD + counter.ordinal());
+        }
+
+        public long contended() {
+            Thread t = thread;
+            // ThreadMXBean does not see virtual threads; their sorters never block on a monitor anyway.
+            if (t != null && !t.isVirtual() && endNanos == 0) {
+                ThreadInfo info = threads.getThreadInfo(t.threadId());
+                if (info != null) blocked = info.getBlockedCount();
+            }
+            return get(Counter.CONTENDED) + blocked;
+        }
+
+        public double stepsPerSecond() {
+            long start = startNanos;
+            if (start == 0) return 0;
+            long end = endNanos != 0 ? endNanos : System.nanoTime();
+            return get(Counter.STEPS) / ((end - start) / 1e9);
+        }
+
+        @Override
+        public String toString() {
+            Thread t = thread;
+            return String.format("%-12s %12d %12.0f %10d %10d %10d %10d %9d %8d", t != null ? t.getName() : "-",
+                    get(Counter.STEPS), stepsPerSecond(), get(Counter.SWAPS), get(Counter.CONFLICTS),
+                    get(Counter.RESTARTS), contended(), get(Counter.PASSES), passesToSorted);
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,23 @@
+package org.example;
+
+public interface StatsMXBean {
+    long getSteps();
+
+    long getSwaps();
+
+    long getConflicts();
+
+    long getRestarts();
+
+    long getContended();
+
+    long getPasses();
+
+    long getCleanPasses();
+
+    long getPassesToSorted();
+
+    double getStepsPerSecond();
+
+    String[] getPerThread();
+}
\ No newline at end of file
@@ -0,0 +1,8 @@
+package org.example;
+
+enum Step {
+    KEPT,
+    SWAPPED,
+    CONFLICT,
+    END
+}
@@ -0,0 +1,151 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class StripedArray {
+    public static final int DEFAULT_SEGMENT_SIZE = 64;
+
+    private final int segmentSize;
+    private final int sorters;
+    private final ConcurrentLinkedDeque<String> staging = new ConcurrentLinkedDeque<>();
+    private final CyclicBarrier barrier;
+    private final AtomicInteger cursor = new AtomicInteger();
+    private final WorkSignal signal = new WorkSignal();
+    private String[] values = new String[0];
+    private ReentrantLock[] locks = new ReentrantLock[0];
+    private int parity;
+    private volatile boolean phaseSwapped;
+    // Only touched in endPhase, or read by sorters after the barrier it ran behind.
+    private int cleanPhases;
+    private boolean idle;
+    private long idleGeneration;
+
+    public StripedArray(int segmentSize, int sorters) {
+        // Even, so the first pair of a segment and the pair across its lower boundary never share a phase.
+        if (segmentSize < 2 || segmentSize % 2 != 0) throw new IllegalArgumentException("segmentSize: " + segmentSize);
+        this.segmentSize = segmentSize;
+        this.sorters = sorters;
+        this.barrier = new CyclicBarrier(sorters, this::endPhase);
+    }
+
+    public void addFirst(String value) {
+        staging.addFirst(value);
+        // Every phase needs every sorter at the barrier, so an insert wakes them all.
+        signal.dirty(sorters);
+    }
+
+    public List<String> snapshot() {
+        synchronized (this) {
+            List<String> snap = new ArrayList<>(values.length);
+            for (int k = 0; k < locks.length; k++) {
+                locks[k].lock();
+                try {
+                    int end = Math.min((k + 1) * segmentSize, values.length);
+                    for (int i = k * segmentSize; i < end; i++) snap.add(values[i]);
+                } finally {
+                    locks[k].unlock();
+                }
+            }
+            return snap;
+        }
+    }
+
+    int claim() {
+        int k = cursor.getAndIncrement();
+        return k < locks.length ? k : -1;
+    }
+
+    void awaitPhase() throws InterruptedException, BrokenBarrierException {
+        barrier.await();
+    }
+
+    /**
+     * Called by each sorter after the barrier: parks it while the array is sorted and nothing has been inserted.
+     * Returns false if the sorter was interrupted instead.
+     */
+    boolean awaitWork() {
+        return !idle || signal.awaitWork(idleGeneration);
+    }
+
+    /**
+     * Runs the current phase's compares in segment {@code k} and returns whether any of them swapped.
+     */
+    boolean sortSegment(int k, Stats.Slot stats) {
+        int start = k * segmentSize;
+        int end = Math.min(start + segmentSize, values.length);
+        int last = end - 1;
+        boolean swapped = false;
+        lock(locks[k], stats);
+        try {
+            for (int i = start + parity; i < last; i += 2) swapped |= compareAndSwap(i, stats);
+            // The last pair of the segment reaches into the next one, which is the only time two locks are held.
+            if ((last & 1) == parity && last + 1 < values.length) {
+                lock(locks[k + 1], stats);
+                try {
+                    swapped |= compareAndSwap(last, stats);
+                } finally {
+                    locks[k + 1].unlock();
+                }
+            }
+        } finally {
+            locks[k].unlock();
+        }
+        if (swapped && !phaseSwapped) phaseSwapped = true;
+        return swapped;
+    }
+
+    // Segment locks are always taken in ascending order, so waiting for one cannot deadlock.
+    private static void lock(ReentrantLock lock, Stats.Slot stats) {
+        if (lock.tryLock()) return;
+        stats.add(Stats.Counter.CONTENDED);
+        lock.lock();
+    }
+
+    private boolean compareAndSwap(int i, Stats.Slot stats) {
+        stats.add(Stats.Counter.STEPS);
+        String left = values[i];
+        String right = values[i + 1];
+        if (left.compareTo(right) <= 0) return false;
+        values[i] = right;
+        values[i + 1] = left;
+        stats.add(Stats.Counter.SWAPS);
+        return true;
+    }
+
+    // Runs on the last sorter to reach the barrier, while the others wait on it.
+    private void endPhase() {
+        // Read before the staging check: an insert after it moves the generation on and keeps the sorters awake.
+        long generation = signal.generation();
+        boolean merged = !staging.isEmpty();
+        if (merged) merge();
+        cleanPhases = phaseSwapped || merged ? 0 : cleanPhases + 1;
+        phaseSwapped = false;
+        // An odd and an even phase in a row without a swap: every adjacent pair is in order.
+        idle = cleanPhases >= 2;
+        idleGeneration = generation;
+        parity ^= 1;
+        cursor.set(0);
+    }
+
+    private void merge() {
+        List<String> staged = new ArrayList<>();
+        String s;
+        while ((s = staging.pollFirst()) != null) staged.add(s);
+        String[] merged = new String[staged.size() + values.length];
+        for (int i = 0; i < staged.size(); i++) merged[i] = staged.get(i);
+        System.arraycopy(values, 0, merged, staged.size(), values.length);
+        ReentrantLock[] grown = new ReentrantLock[(merged.length + segmentSize - 1) / segmentSize];
+        System.arraycopy(locks, 0, grown, 0, locks.length);
+        for (int k = locks.length; k < grown.length; k++) grown[k] = new ReentrantLock();
+        synchronized (this) {
+            values = merged;
+            locks = grown;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,43 @@
+package org.example;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Where sorters that found nothing to do wait for inserts. Every insert moves the dirty generation on and wakes
+ * only as many parked sorters as it made work for; the rest stay parked.
+ */
+public class WorkSignal {
+    private final AtomicLong generation = new AtomicLong();
+    private final ConcurrentLinkedQueue<Thread> parked = new ConcurrentLinkedQueue<>();
+
+    public long generation() {
+        return generation.get();
+    }
+
+    /**
+     * Records new work enough to keep {@code sorters} sorters busy and wakes up to that many.
+     */
+    public void dirty(int sorters) {
+        generation.incrementAndGet();
+        for (int i = 0; i < sorters; i++) {
+            Thread t = parked.poll();
+            if (t == null) break;
+            LockSupport.unpark(t);
+        }
+    }
+
+    /**
+     * Parks the calling sorter if nothing was inserted since generation {@code seen}, until it is woken. Returns
+     * false if it was interrupted instead.
+     */
+    public boolean awaitWork(long seen) {
+        Thread me = Thread.currentThread();
+        // Queued before the generation is checked, so a dirty() in between either is seen here or unparks us.
+        parked.add(me);
+        while (generation.get() == seen && !me.isInterrupted()) LockSupport.park(this);
+        parked.remove(me);
+        return !me.isInterrupted();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,118 @@
+package com.example.rsakey;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.PrivateKey;
+import java.security.Security;
+import java.util.EnumMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import java.util.logging.SimpleFormatter;
+import java.util.logging.StreamHandler;
+
+/**
+ * Connect, ask for a cached name and read the answer, against an in-process server, with the server's per-request
+ * logging at FINE going nowhere ({@code off}), written on the calling thread ({@code sync}), or handed to
+ * {@link AsyncLogHandler} ({@code async}). Both handlers format and flush every record into a null stream, so the
+ * difference is who pays for it.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class AcceptBenchmark {
+    private static final String REQUEST = KeyAlgorithm.EC_P256.key("bench");
+
+    @Param({"off", "sync", "async"})
+    String logging;
+
+    private KeyServer server;
+    private Thread acceptor;
+    private AsyncLogHandler asyncLog;
+    private InetSocketAddress address;
+    private byte[] request;
+
+    @Setup
+    public void setup() throws Exception {
+        Security.addProvider(new BouncyCastleProvider());
+        Logger root = Logger.getLogger("");
+        for (Handler handler : root.getHandlers()) root.removeHandler(handler);
+        Handler sink = new StreamHandler(OutputStream.nullOutputStream(), new SimpleFormatter()) {
+            @Override
+            public synchronized void publish(LogRecord record) {
+                super.publish(record);
+                flush();
+            }
+        };
+        sink.setLevel(Level.ALL);
+        root.addHandler(sink);
+        Logger.getLogger("KeyServer").setLevel("off".equals(logging) ? Level.WARNING : Level.FINE);
+        if ("async".equals(logging)) asyncLog = AsyncLogHandler.install(8192);
+
+        int port;
+        try (ServerSocket probe = new ServerSocket(0)) {
+            port = probe.getLocalPort();
+        }
+        EnumMap<KeyAlgorithm, KeyPool> pools = new EnumMap<>(KeyAlgorithm.class);
+        pools.put(KeyAlgorithm.DEFAULT, new KeyPool(KeyAlgorithm.DEFAULT, 0, 0, 0, 1, 0));
+        pools.put(KeyAlgorithm.EC_P256, new KeyPool(KeyAlgorithm.EC_P256, 0, 0, 0, 1, 0));
+        Path dataDir = Files.createTempDirectory("accept-bench");
+        PrivateKey issuerKey = KeyPool.generate(2048).getPrivate();
+        server = new KeyServer(port, () -> issuerKey, "CN=BenchIssuer", 2, 1, pools,
+                new KeyCache(64L << 20, 0), new KeyLog(dataDir),
+                new AdmissionControl(1024, 0, 0, 64L << 20, 1, 1), 16, 10_000, 60_000, false,
+                KeyServer.Engine.NIO);
+        acceptor = new Thread(() -> {
+            try {
+                server.run();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }, "Bench-Acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+
+        address = new InetSocketAddress("localhost", port);
+        request = (REQUEST + '\0').getBytes(StandardCharsets.US_ASCII);
+        // The first request generates and signs; every measured one is answered from the cache.
+        fetch();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        server.shutdown();
+        acceptor.join(1000);
+        if (asyncLog != null) asyncLog.close();
+    }
+
+    @Benchmark
+    public int fetch() throws IOException {
+        try (Socket s = new Socket()) {
+            s.connect(address);
+            s.setTcpNoDelay(true);
+            s.getOutputStream().write(request);
+            InputStream in = new BufferedInputStream(s.getInputStream());
+            int keyLen = Protocol.readInt(in, "keyPem length");
+            if (keyLen == Protocol.BUSY) throw new IOException("Server busy");
+            in.skipNBytes(keyLen);
+            return keyLen + Protocol.readBlock(in, "certPem", Protocol.MAX_BLOCK).length;
+        }
+    }
+}
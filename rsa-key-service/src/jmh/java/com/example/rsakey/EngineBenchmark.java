@@ -0,0 +1,122 @@
+package com.example.rsakey;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.PrivateKey;
+import java.security.Security;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The two connection engines side by side: connect, ask for a cached name and read the answer, from 32 client
+ * threads, while {@code idleConnections} other clients hold a connection open mid-request. Throughput and
+ * sampled latency come from JMH; the heap each idle connection costs is printed once per trial.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(32)
+@State(Scope.Benchmark)
+public class EngineBenchmark {
+    private static final String REQUEST = KeyAlgorithm.EC_P256.key("bench");
+
+    @Param({"nio", "virtual"})
+    String engine;
+
+    @Param({"0", "5000"})
+    int idleConnections;
+
+    private KeyServer server;
+    private Thread acceptor;
+    private InetSocketAddress address;
+    private byte[] request;
+    private final List<Socket> idle = new ArrayList<>();
+
+    @Setup
+    public void setup() throws Exception {
+        Security.addProvider(new BouncyCastleProvider());
+        Logger.getLogger("").setLevel(Level.WARNING);
+        int port;
+        try (ServerSocket probe = new ServerSocket(0)) {
+            port = probe.getLocalPort();
+        }
+        EnumMap<KeyAlgorithm, KeyPool> pools = new EnumMap<>(KeyAlgorithm.class);
+        pools.put(KeyAlgorithm.DEFAULT, new KeyPool(KeyAlgorithm.DEFAULT, 0, 0, 0, 1, 0));
+        pools.put(KeyAlgorithm.EC_P256, new KeyPool(KeyAlgorithm.EC_P256, 0, 0, 0, 1, 0));
+        PrivateKey issuerKey = KeyPool.generate(2048).getPrivate();
+        // Idle clients must outlive the trial, so the read timeout is off.
+        server = new KeyServer(port, () -> issuerKey, "CN=BenchIssuer", 4, 1, pools,
+                new KeyCache(64L << 20, 0), new KeyLog(Files.createTempDirectory("engine-bench")),
+                new AdmissionControl(1024, 0, 0, 256L << 20, 1, 1), 16, 0, 60_000, false,
+                KeyServer.Engine.valueOf(engine.toUpperCase()));
+        acceptor = new Thread(() -> {
+            try {
+                server.run();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }, "Bench-Acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+
+        address = new InetSocketAddress("localhost", port);
+        request = (REQUEST + '\0').getBytes(StandardCharsets.US_ASCII);
+        fetch();
+
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        System.gc();
+        long before = memory.getHeapMemoryUsage().getUsed();
+        for (int i = 0; i < idleConnections; ++i) {
+            Socket s = new Socket();
+            s.connect(address);
+            // Half a name: the server is left waiting for the rest.
+            s.getOutputStream().write('x');
+            idle.add(s);
+        }
+        Thread.sleep(500);
+        System.gc();
+        if (idleConnections > 0) {
+            System.out.printf("%n%s: %d bytes of heap per idle connection%n", engine,
+                    (memory.getHeapMemoryUsage().getUsed() - before) / idleConnections);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        for (Socket s : idle) s.close();
+        idle.clear();
+        server.shutdown();
+        acceptor.join(1000);
+    }
+
+    @Benchmark
+    public int fetch() throws IOException {
+        try (Socket s = new Socket()) {
+            s.connect(address);
+            s.setTcpNoDelay(true);
+            s.getOutputStream().write(request);
+            InputStream in = new BufferedInputStream(s.getInputStream());
+            int keyLen = Protocol.readInt(in, "keyPem length");
+            if (keyLen == Protocol.BUSY) throw new IOException("Server busy");
+            in.skipNBytes(keyLen);
+            return keyLen + Protocol.readBlock(in, "certPem", Protocol.MAX_BLOCK).length;
+        }
+    }
+}
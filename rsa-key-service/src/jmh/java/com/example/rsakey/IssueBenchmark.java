@@ -0,0 +1,102 @@
+package com.example.rsakey;
+
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.security.KeyPair;
+import java.security.PublicKey;
+import java.security.Security;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-name costs after a key pair is available: PEM encoding, certificate signing (with a fresh issuer,
+ * a reused one, and batched as genLoop does), and framing the response body.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IssueBenchmark {
+    private static final int BATCH = 16;
+
+    @Param({"2048", "8192"})
+    int keySize;
+
+    private KeyPair subject;
+    private KeyPair issuer;
+    private X500Name issuerName;
+    private CertIssuer certIssuer;
+    private List<String> batchNames;
+    private List<PublicKey> batchKeys;
+    private X509Certificate cert;
+    private String keyPem;
+    private String certPem;
+    private KeyEntry entry;
+
+    @Setup
+    public void setup() throws Exception {
+        Security.addProvider(new BouncyCastleProvider());
+        subject = KeyPool.generate(keySize);
+        issuer = KeyPool.generate(2048);
+        issuerName = new X500Name("CN=BenchIssuer");
+        certIssuer = new CertIssuer(issuerName, issuer.getPrivate());
+        cert = certIssuer.issue("bench", subject.getPublic());
+        batchNames = new ArrayList<>();
+        batchKeys = new ArrayList<>();
+        for (int i = 0; i < BATCH; ++i) {
+            batchNames.add("bench-" + i);
+            batchKeys.add(subject.getPublic());
+        }
+        keyPem = KeyServer.PemUtils.privateKeyToPem(subject.getPrivate());
+        certPem = KeyServer.PemUtils.certToPem(cert);
+        entry = new KeyEntry(keyPem, certPem);
+    }
+
+    @Benchmark
+    public String privateKeyToPem() {
+        return KeyServer.PemUtils.privateKeyToPem(subject.getPrivate());
+    }
+
+    @Benchmark
+    public String certToPem() throws Exception {
+        return KeyServer.PemUtils.certToPem(cert);
+    }
+
+    @Benchmark
+    public X509Certificate issueFreshSigner() throws Exception {
+        return new CertIssuer(issuerName, issuer.getPrivate()).issue("bench", subject.getPublic());
+    }
+
+    @Benchmark
+    public X509Certificate issueCertificate() throws Exception {
+        return certIssuer.issue("bench", subject.getPublic());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public List<X509Certificate> issueBatch() throws Exception {
+        return certIssuer.issueAll(batchNames, batchKeys);
+    }
+
+    @Benchmark
+    public KeyEntry frameResponse() {
+        return new KeyEntry(keyPem, certPem);
+    }
+
+    @Benchmark
+    public ByteBuffer repeatResponse() {
+        return entry.response();
+    }
+
+    @Benchmark
+    public ByteBuffer pipelinedNameTag() {
+        return Protocol.nameTag("bench");
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.rsakey;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.security.KeyPair;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single-key RSA generation latency: the JDK generator used before, the sieved search on one thread,
+ * and the same search spread over a fork-join pool.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class KeyGenBenchmark {
+    @Param({"4096", "8192"})
+    int keySize;
+
+    private ForkJoinPool pool;
+
+    @Setup
+    public void setup() {
+        pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Benchmark
+    public KeyPair jdkKeyPairGenerator() throws Exception {
+        return KeyPool.generate(keySize);
+    }
+
+    @Benchmark
+    public KeyPair sequentialSearch() throws Exception {
+        return RsaKeyGen.generate(keySize, () -> false);
+    }
+
+    @Benchmark
+    public KeyPair parallelSearch() throws Exception {
+        return RsaKeyGen.generate(keySize, pool, () -> false);
+    }
+}
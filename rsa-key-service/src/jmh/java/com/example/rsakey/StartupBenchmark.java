@@ -0,0 +1,144 @@
+package com.example.rsakey;
+
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.security.Security;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Launches the shadow jar as a server and times how long until it accepts a connection and until it answers its
+ * first request (a name already in its key log), with and without the AppCDS archive from {@code cdsArchive}
+ * and with and without {@code --lazy-start}. Run through {@code gradle jmhStartup}, which builds both and passes
+ * their paths as the {@code rsakey.jar} and {@code rsakey.cds} system properties.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StartupBenchmark {
+    private static final String NAME = KeyAlgorithm.EC_P256.key("bench");
+
+    @Param({"none", "cds"})
+    String archive;
+
+    @Param({"eager", "lazy"})
+    String start;
+
+    private List<String> command;
+    private InetSocketAddress address;
+    private byte[] request;
+    private Process server;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        String jar = System.getProperty("rsakey.jar");
+        String cds = System.getProperty("rsakey.cds");
+        if (jar == null || !Files.isRegularFile(Path.of(jar)) || cds == null || !Files.isRegularFile(Path.of(cds))) {
+            throw new IllegalStateException("rsakey.jar and rsakey.cds must name the shadow jar and its archive;"
+                    + " run through gradle jmhStartup");
+        }
+        Security.addProvider(new BouncyCastleProvider());
+        Path dir = Files.createTempDirectory("startup-bench");
+        KeyPair issuer = KeyPool.generate(2048);
+        Path issuerKey = dir.resolve("issuer.key");
+        Files.writeString(issuerKey, KeyServer.PemUtils.privateKeyToPem(issuer.getPrivate()));
+        // The measured request is answered from the key log, which is the common case right after a restart.
+        KeyPair subject = KeyAlgorithm.EC_P256.generate();
+        Path dataDir = dir.resolve("data");
+        try (KeyLog keyLog = new KeyLog(dataDir)) {
+            byte[] certDer = new CertIssuer(new X500Name("CN=BenchIssuer"), issuer.getPrivate())
+                    .issue(NAME, subject.getPublic()).getEncoded();
+            keyLog.append(NAME, subject.getPrivate().getEncoded(), certDer);
+        }
+
+        int port;
+        try (ServerSocket probe = new ServerSocket(0)) {
+            port = probe.getLocalPort();
+        }
+        command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        if ("cds".equals(archive)) command.add("-XX:SharedArchiveFile=" + cds);
+        command.addAll(List.of("-jar", jar, "server", "--port", Integer.toString(port),
+                "--issuer-key", issuerKey.toString(), "--data-dir", dataDir.toString(), "--algorithms", "ec-p256",
+                "--pool-size", "0", "--light-pool-size", "0"));
+        if ("lazy".equals(start)) command.add("--lazy-start");
+        address = new InetSocketAddress("localhost", port);
+        request = (NAME + '\0').getBytes(StandardCharsets.US_ASCII);
+    }
+
+    @TearDown(Level.Invocation)
+    public void stop() throws InterruptedException {
+        if (server == null) return;
+        server.destroy();
+        server.waitFor();
+        server = null;
+    }
+
+    @Benchmark
+    public void timeToListening() throws Exception {
+        launch();
+        while (true) {
+            try (Socket s = connect()) {
+                if (s != null) return;
+            }
+        }
+    }
+
+    @Benchmark
+    public int timeToFirstResponse() throws Exception {
+        launch();
+        while (true) {
+            try (Socket s = connect()) {
+                if (s == null) continue;
+                OutputStream out = s.getOutputStream();
+                out.write(request);
+                InputStream in = new BufferedInputStream(s.getInputStream());
+                int keyLen = Protocol.readInt(in, "keyPem length");
+                if (keyLen == Protocol.BUSY) throw new IOException("Server busy");
+                in.skipNBytes(keyLen);
+                return keyLen + Protocol.readBlock(in, "certPem", Protocol.MAX_BLOCK).length;
+            }
+        }
+    }
+
+    private void launch() throws IOException {
+        server = new ProcessBuilder(command)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+    }
+
+    /**
+     * A connected socket, or {@code null} if the server is not listening yet.
+     */
+    private Socket connect() throws IOException {
+        if (!server.isAlive()) throw new IllegalStateException("Server exited with " + server.exitValue());
+        Socket s = new Socket();
+        try {
+            s.connect(address, 1000);
+            return s;
+        } catch (ConnectException e) {
+            s.close();
+            Thread.onSpinWait();
+            return null;
+        }
+    }
+}
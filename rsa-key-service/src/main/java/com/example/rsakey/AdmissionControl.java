@@ -0,0 +1,82 @@
+package com.example.rsakey;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Decides whether a new generation or connection is admitted. Wait time is estimated from the work ahead of a
+ * request and a moving average of generation time, both per {@link KeyAlgorithm}; a rejected request gets a
+ * "retry after" hint in milliseconds.
+ */
+final class AdmissionControl {
+    static final long MIN_RETRY_MS = 100;
+    static final long MAX_RETRY_MS = 60_000;
+    private static final long DEFAULT_GEN_MS = 1000;
+
+    private final int maxQueue;
+    private final long maxWaitMs;
+    private final int maxConnections;
+    private final long maxOutboundBytes;
+    private final int genThreads;
+    private final int lightGenThreads;
+    private final AtomicLongArray avgGenMs = new AtomicLongArray(KeyAlgorithm.values().length);
+
+    AdmissionControl(int maxQueue, long maxWaitMs, int maxConnections, long maxOutboundBytes, int genThreads,
+                     int lightGenThreads) {
+        this.maxQueue = maxQueue;
+        this.maxWaitMs = maxWaitMs;
+        this.maxConnections = maxConnections;
+        this.maxOutboundBytes = maxOutboundBytes;
+        this.genThreads = Math.max(1, genThreads);
+        this.lightGenThreads = Math.max(1, lightGenThreads);
+    }
+
+    /**
+     * Adds one generation that found the pool empty; pool hits are not recorded.
+     */
+    void recordGeneration(KeyAlgorithm algorithm, long millis) {
+        avgGenMs.getAndUpdate(algorithm.ordinal(), avg -> avg == 0 ? millis : avg + (millis - avg) / 8);
+    }
+
+    long estimatedWaitMs(KeyAlgorithm algorithm, int queuedAhead, int running) {
+        long avg = avgGenMs.get(algorithm.ordinal());
+        if (avg == 0) avg = algorithm == KeyAlgorithm.DEFAULT ? DEFAULT_GEN_MS : 1;
+        return (queuedAhead + running + 1) * avg / threads(algorithm);
+    }
+
+    int threads(KeyAlgorithm algorithm) {
+        return algorithm == KeyAlgorithm.DEFAULT ? genThreads : lightGenThreads;
+    }
+
+    /**
+     * Returns 0 if a new generation may be queued behind {@code queuedAhead} tasks, otherwise the retry hint.
+     */
+    long retryAfterMs(KeyAlgorithm algorithm, int queuedAhead, int running) {
+        boolean queueFull = maxQueue > 0 && queuedAhead >= maxQueue;
+        long wait = estimatedWaitMs(algorithm, queuedAhead, running);
+        boolean tooSlow = maxWaitMs > 0 && wait > maxWaitMs;
+        if (!queueFull && !tooSlow) return 0;
+        // Long enough for whichever limit is further from being met to be met again.
+        long drain = tooSlow ? wait - maxWaitMs : 0;
+        if (queueFull) drain = Math.max(drain, wait - estimatedWaitMs(algorithm, maxQueue - 1, running));
+        return clamp(drain);
+    }
+
+    boolean acceptConnection(int openConnections) {
+        return maxConnections <= 0 || openConnections < maxConnections;
+    }
+
+    /**
+     * Whether a response of {@code bytes} may be queued on top of {@code backlogBytes} already waiting for slow readers.
+     */
+    boolean acceptResponse(long backlogBytes, int bytes) {
+        return maxOutboundBytes <= 0 || backlogBytes + bytes <= maxOutboundBytes;
+    }
+
+    long connectionRetryMs() {
+        return clamp(estimatedWaitMs(KeyAlgorithm.DEFAULT, 0, 0));
+    }
+
+    private static long clamp(long ms) {
+        return Math.max(MIN_RETRY_MS, Math.min(MAX_RETRY_MS, ms));
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.rsakey;
+
+import java.util.function.IntSupplier;
+
+/**
+ * Gauges for one algorithm's generation queue and key pool. {@link ServerMetrics} registers one per enabled
+ * algorithm next to its own MBean and lists them on the stats port.
+ */
+final class AlgorithmMetrics implements AlgorithmMetricsMXBean {
+    final KeyAlgorithm algorithm;
+    private final IntSupplier queueDepth;
+    private final IntSupplier inFlight;
+    private final KeyPool keyPool;
+
+    AlgorithmMetrics(KeyAlgorithm algorithm, IntSupplier queueDepth, IntSupplier inFlight, KeyPool keyPool) {
+        this.algorithm = algorithm;
+        this.queueDepth = queueDepth;
+        this.inFlight = inFlight;
+        this.keyPool = keyPool;
+    }
+
+    @Override
+    public String getAlgorithm() {
+        return algorithm.id;
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return queueDepth.getAsInt();
+    }
+
+    @Override
+    public int getGenerationsInFlight() {
+        return inFlight.getAsInt();
+    }
+
+    @Override
+    public int getPoolDepth() {
+        return keyPool.depth();
+    }
+
+    @Override
+    public long getPoolGenerated() {
+        return keyPool.generated();
+    }
+
+    @Override
+    public long getPoolTaken() {
+        return keyPool.taken();
+    }
+
+    @Override
+    public long getPoolEmptyHits() {
+        return keyPool.emptyHits();
+    }
+
+    String stats() {
+        String suffix = "." + algorithm.id + " ";
+        return "queue_depth" + suffix + getQueueDepth() + "\n"
+                + "generations_in_flight" + suffix + getGenerationsInFlight() + "\n"
+                + "pool" + suffix + keyPool.stats() + "\n";
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.rsakey;
+
+/**
+ * JMX view of {@link AlgorithmMetrics}: the generation queue and key pool of one algorithm.
+ */
+public interface AlgorithmMetricsMXBean {
+    String getAlgorithm();
+
+    int getQueueDepth();
+
+    int getGenerationsInFlight();
+
+    int getPoolDepth();
+
+    long getPoolGenerated();
+
+    long getPoolTaken();
+
+    long getPoolEmptyHits();
+}
@@ -0,0 +1,157 @@
+package com.example.rsakey;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.ErrorManager;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+/**
+ * Takes over the root logger's handlers and feeds them from a background thread, so a selector or generator
+ * thread that logs only pays for building the record and one CAS. Records go through a bounded lock-free ring
+ * (many producers, one consumer); when it is full the record is dropped and counted rather than blocking the
+ * caller, and the drain thread reports the count. The source of a record is reported as its logger name, since
+ * inferring the calling method would mean walking the producer's stack.
+ */
+final class AsyncLogHandler extends Handler {
+    private static final long PARK_NANOS = 100_000_000;
+    private static final long DROP_REPORT_NANOS = 1_000_000_000;
+
+    private final Handler[] delegates;
+    private final AtomicReferenceArray<LogRecord> slots;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final Thread drainer;
+    private volatile long head;
+    private volatile boolean sleeping;
+    private volatile boolean running = true;
+
+    private AsyncLogHandler(int capacity, Handler[] delegates) {
+        this.delegates = delegates;
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+        Level level = Level.OFF;
+        for (Handler delegate : delegates) {
+            if (delegate.getLevel().intValue() < level.intValue()) level = delegate.getLevel();
+        }
+        setLevel(level);
+        this.drainer = new Thread(this::drainLoop, "Log-Drain");
+        drainer.setDaemon(true);
+        drainer.start();
+    }
+
+    /**
+     * Moves the root logger's handlers behind a ring of {@code capacity} records.
+     */
+    static AsyncLogHandler install(int capacity) {
+        Logger root = Logger.getLogger("");
+        Handler[] handlers = root.getHandlers();
+        for (Handler handler : handlers) root.removeHandler(handler);
+        AsyncLogHandler async = new AsyncLogHandler(capacity, handlers);
+        root.addHandler(async);
+        return async;
+    }
+
+    long dropped() {
+        return dropped.get();
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        if (!running || !isLoggable(record)) return;
+        record.setSourceClassName(record.getLoggerName());
+        record.setSourceMethodName(null);
+        if (!offer(record)) {
+            dropped.incrementAndGet();
+            return;
+        }
+        if (sleeping) LockSupport.unpark(drainer);
+    }
+
+    @Override
+    public void flush() {
+        for (Handler delegate : delegates) delegate.flush();
+    }
+
+    /**
+     * Stops the drain thread once it has written everything queued so far, then closes the delegates.
+     */
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(drainer);
+        try {
+            drainer.join(1000);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+        for (Handler delegate : delegates) delegate.close();
+    }
+
+    private boolean offer(LogRecord record) {
+        long t;
+        do {
+            t = tail.get();
+            if (t - head >= slots.length()) return false;
+        } while (!tail.compareAndSet(t, t + 1));
+        slots.set((int) t & mask, record);
+        return true;
+    }
+
+    /**
+     * The next record, or {@code null} if the ring is empty or its head slot is claimed but not yet filled.
+     */
+    private LogRecord poll() {
+        long h = head;
+        int i = (int) h & mask;
+        LogRecord record = slots.get(i);
+        if (record == null) return null;
+        slots.set(i, null);
+        head = h + 1;
+        return record;
+    }
+
+    private void drainLoop() {
+        long lastDropReport = System.nanoTime();
+        long reportedDrops = 0;
+        boolean unflushed = false;
+        while (true) {
+            LogRecord record = poll();
+            if (record != null) {
+                write(record);
+                unflushed = true;
+                continue;
+            }
+            long drops = dropped.get();
+            if (drops != reportedDrops && System.nanoTime() - lastDropReport > DROP_REPORT_NANOS) {
+                write(new LogRecord(Level.WARNING, "Log ring full, dropped " + (drops - reportedDrops) + " records"));
+                reportedDrops = drops;
+                lastDropReport = System.nanoTime();
+                unflushed = true;
+            }
+            if (unflushed) {
+                flush();
+                unflushed = false;
+            }
+            if (!running && tail.get() == head) return;
+            sleeping = true;
+            if (tail.get() == head && running) LockSupport.parkNanos(this, PARK_NANOS);
+            sleeping = false;
+        }
+    }
+
+    private void write(LogRecord record) {
+        for (Handler delegate : delegates) {
+            try {
+                delegate.publish(record);
+            } catch (RuntimeException e) {
+                reportError("Log delegate failed", e, ErrorManager.WRITE_FAILURE);
+            }
+        }
+    }
+}
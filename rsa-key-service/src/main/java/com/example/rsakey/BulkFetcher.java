@@ -0,0 +1,364 @@
+package com.example.rsakey;
+
+import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bulk mode of {@link KeyClient}: fetches every name listed in a file (or on stdin, one per line) into an output
+ * directory, skipping names whose key and certificate are already there. A fixed set of {@code --connections}
+ * pipelined connections take batches of names from a shared queue; names the server answers busy go back on the
+ * queue after a backoff. Key and certificate bytes go from the socket to disk through {@link FileChannel}, into
+ * a temporary file that is renamed once complete, so an interrupted run never leaves a half-written pair behind.
+ */
+final class BulkFetcher {
+    private static final long STALE_CONNECTION_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    private final InetSocketAddress address;
+    private final Path outDir;
+    private final int connections;
+    private final int batchSize;
+    private final int maxRetries;
+    private final DelayQueue<Pending> queue = new DelayQueue<>();
+    private final AtomicInteger remaining = new AtomicInteger();
+
+    private final LongAdder fetched = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+
+    private BulkFetcher(InetSocketAddress address, Path outDir, int connections, int batchSize, int maxRetries) {
+        this.address = address;
+        this.outDir = outDir;
+        this.connections = connections;
+        this.batchSize = batchSize;
+        this.maxRetries = maxRetries;
+    }
+
+    static void main(String[] args) throws Exception {
+        String host = "localhost";
+        int port = 9000;
+        String namesFile = null;
+        String outDir = ".";
+        int connections = 8;
+        int batchSize = 32;
+        int maxRetries = 5;
+        KeyAlgorithm algorithm = KeyAlgorithm.DEFAULT;
+
+        for (int i = 0; i < args.length; ++i) {
+            switch (args[i]) {
+                case "--bulk":
+                    break;
+                case "--host":
+                    host = args[++i];
+                    break;
+                case "--port":
+                    port = Integer.parseInt(args[++i]);
+                    break;
+                case "--names-file":
+                    namesFile = args[++i];
+                    break;
+                case "--out-dir":
+                    outDir = args[++i];
+                    break;
+                case "--connections":
+                    connections = Integer.parseInt(args[++i]);
+                    break;
+                case "--batch":
+                    batchSize = Integer.parseInt(args[++i]);
+                    break;
+                case "--max-retries":
+                    maxRetries = Integer.parseInt(args[++i]);
+                    break;
+                case "--algorithm":
+                    algorithm = KeyAlgorithm.parse(args[++i]);
+                    if (algorithm == null) {
+                        System.err.println("Unknown algorithm: " + args[i]);
+                        return;
+                    }
+                    break;
+                default:
+                    System.err.println("Unknown arg: " + args[i]);
+            }
+        }
+        Path dir = Path.of(outDir);
+        Files.createDirectories(dir);
+        BulkFetcher fetcher = new BulkFetcher(new InetSocketAddress(host, port), dir, Math.max(1, connections),
+                Math.max(1, batchSize), maxRetries);
+        int failed = fetcher.run(readNames(namesFile), algorithm);
+        if (failed > 0) System.exit(2);
+    }
+
+    /**
+     * Names from {@code file}, or stdin for {@code null} or {@code "-"}; blank lines and {@code #} comments are
+     * ignored, and repeats are dropped.
+     */
+    private static Set<String> readNames(String file) throws IOException {
+        Set<String> names = new LinkedHashSet<>();
+        try (BufferedReader reader = file == null || "-".equals(file)
+                ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.US_ASCII))
+                : Files.newBufferedReader(Path.of(file), StandardCharsets.US_ASCII)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.strip();
+                if (!line.isEmpty() && !line.startsWith("#")) names.add(line);
+            }
+        }
+        return names;
+    }
+
+    private int run(Set<String> names, KeyAlgorithm algorithm) throws InterruptedException {
+        long start = System.nanoTime();
+        int present = 0;
+        for (String name : names) {
+            String request = algorithm.key(name);
+            if (exists(request)) {
+                ++present;
+            } else {
+                queue.add(new Pending(request, 0, System.nanoTime()));
+                remaining.incrementAndGet();
+            }
+        }
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < Math.min(connections, remaining.get()); ++i) executor.submit(this::work);
+        }
+        report(names.size(), present, System.nanoTime() - start);
+        return failed.intValue();
+    }
+
+    private boolean exists(String request) {
+        String base = KeyClient.fileBase(request);
+        return Files.isRegularFile(outDir.resolve(base + ".key")) && Files.isRegularFile(outDir.resolve(base + ".crt"));
+    }
+
+    private void work() {
+        SocketChannel channel = null;
+        ByteBuffer in = ByteBuffer.allocate(64 * 1024);
+        long lastUsed = 0;
+        List<Pending> batch = new ArrayList<>();
+        try {
+            while (remaining.get() > 0) {
+                Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.clear();
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                // The server reaps connections that sit idle, so one unused for a while is not worth trying.
+                if (channel != null && System.nanoTime() - lastUsed > STALE_CONNECTION_NANOS) channel = close(channel);
+                try {
+                    if (channel == null) {
+                        channel = connect();
+                        in.clear().flip();
+                    }
+                    fetchBatch(channel, in, batch);
+                    lastUsed = System.nanoTime();
+                } catch (IOException e) {
+                    System.err.println("Connection to " + address + " failed: " + e.getMessage());
+                    channel = close(channel);
+                    for (Pending p : batch) retry(p, 0);
+                }
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        } finally {
+            close(channel);
+        }
+    }
+
+    private SocketChannel connect() throws IOException {
+        SocketChannel channel = SocketChannel.open();
+        try {
+            channel.socket().connect(address, 5000);
+            channel.socket().setTcpNoDelay(true);
+            channel.write(ByteBuffer.wrap(new byte[]{Protocol.PIPELINE}));
+            return channel;
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Sends every name of {@code batch} and saves the answers as they come, in whatever order. Names answered
+     * busy are put back on the queue; on an I/O error the caller requeues the batch, so finished names are
+     * removed from it as they are saved.
+     */
+    private void fetchBatch(SocketChannel channel, ByteBuffer in, List<Pending> batch) throws IOException {
+        Map<String, Pending> waiting = new HashMap<>();
+        int size = 0;
+        for (Pending p : batch) {
+            waiting.put(p.request, p);
+            size += p.request.length() + 1;
+        }
+        ByteBuffer out = ByteBuffer.allocate(size);
+        for (Pending p : batch) out.put(p.request.getBytes(StandardCharsets.US_ASCII)).put((byte) 0);
+        out.flip();
+        while (out.hasRemaining()) channel.write(out);
+
+        while (!waiting.isEmpty()) {
+            int nameLen = readInt(channel, in);
+            if (nameLen == Protocol.BUSY) {
+                // Turned away at the door (connection limit): everything still waiting goes back.
+                long retryMs = readInt(channel, in);
+                for (Pending p : waiting.values()) retry(p, retryMs);
+                batch.clear();
+                throw new IOException("Server refused the connection, retry after " + retryMs + " ms");
+            }
+            if (nameLen < 0 || nameLen > Protocol.MAX_NAME) throw new IOException("Invalid name length " + nameLen);
+            fill(channel, in, nameLen);
+            byte[] nameBytes = new byte[nameLen];
+            in.get(nameBytes);
+            Pending p = waiting.remove(new String(nameBytes, StandardCharsets.US_ASCII));
+            if (p == null) throw new IOException("Unexpected response for " + new String(nameBytes, StandardCharsets.US_ASCII));
+            long retryMs = save(channel, in, p.request);
+            batch.remove(p);
+            if (retryMs >= 0) {
+                retry(p, retryMs);
+            } else {
+                fetched.increment();
+                remaining.decrementAndGet();
+            }
+        }
+    }
+
+    private void retry(Pending p, long retryAfterMs) {
+        if (p.attempt >= maxRetries) {
+            System.err.println("Giving up on " + p.request + " after " + p.attempt + " retries");
+            failed.increment();
+            remaining.decrementAndGet();
+            return;
+        }
+        retries.increment();
+        long backoff = KeyClient.backoffMs(retryAfterMs, p.attempt);
+        queue.add(new Pending(p.request, p.attempt + 1, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(backoff)));
+    }
+
+    /**
+     * Streams one response body into {@code <base>.key} and {@code <base>.crt} under the output directory, or
+     * returns the server's retry hint if the body is a busy frame (-1 when saved).
+     */
+    private long save(SocketChannel channel, ByteBuffer in, String request) throws IOException {
+        int keyLen = readInt(channel, in);
+        if (keyLen == Protocol.BUSY) return readInt(channel, in);
+        if (keyLen < 0 || keyLen > Protocol.MAX_BLOCK) throw new IOException("Invalid keyLen " + keyLen);
+        String base = KeyClient.fileBase(request);
+        Path keyPart = outDir.resolve(base + ".key.part");
+        Path crtPart = outDir.resolve(base + ".crt.part");
+        try {
+            copy(channel, in, keyLen, keyPart);
+            int certLen = readInt(channel, in);
+            if (certLen < 0 || certLen > Protocol.MAX_BLOCK) throw new IOException("Invalid certPem length " + certLen);
+            copy(channel, in, certLen, crtPart);
+            Files.move(keyPart, outDir.resolve(base + ".key"), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            Files.move(crtPart, outDir.resolve(base + ".crt"), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(keyPart);
+            Files.deleteIfExists(crtPart);
+        }
+        return -1;
+    }
+
+    /**
+     * Writes the next {@code len} bytes of the stream to {@code file}: whatever is already buffered, then the
+     * rest straight from the socket.
+     */
+    private void copy(SocketChannel channel, ByteBuffer in, long len, Path file) throws IOException {
+        try (FileChannel fc = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            long pos = 0;
+            if (in.hasRemaining()) {
+                ByteBuffer head = in.slice(in.position(), (int) Math.min(in.remaining(), len));
+                while (head.hasRemaining()) pos += fc.write(head, pos);
+                in.position(in.position() + (int) pos);
+            }
+            while (pos < len) {
+                long n = fc.transferFrom(channel, pos, len - pos);
+                if (n <= 0) throw new EOFException("Unexpected EOF after " + pos + " of " + len + " bytes");
+                pos += n;
+            }
+        }
+        bytes.add(len);
+    }
+
+    private static int readInt(SocketChannel channel, ByteBuffer in) throws IOException {
+        fill(channel, in, 4);
+        return in.getInt();
+    }
+
+    /**
+     * Reads until at least {@code n} bytes are buffered; {@code in} is kept in read mode.
+     */
+    private static void fill(SocketChannel channel, ByteBuffer in, int n) throws IOException {
+        if (in.remaining() >= n) return;
+        if (n > in.capacity()) throw new IOException("Frame of " + n + " bytes exceeds the read buffer");
+        in.compact();
+        try {
+            while (in.position() < n) {
+                if (channel.read(in) < 0) throw new EOFException("Unexpected EOF from server");
+            }
+        } finally {
+            in.flip();
+        }
+    }
+
+    private static SocketChannel close(SocketChannel channel) {
+        if (channel == null) return null;
+        try {
+            channel.close();
+        } catch (IOException ignore) {}
+        return null;
+    }
+
+    private void report(int names, int present, long elapsedNanos) {
+        double secs = elapsedNanos / 1e9;
+        System.out.printf("Names: %d (%d already present, %d fetched, %d failed, %d busy retries) in %.2f s%n",
+                names, present, fetched.sum(), failed.sum(), retries.sum(), secs);
+        System.out.printf("Throughput: %.1f names/s, %.2f MiB/s written to %s%n",
+                fetched.sum() / secs, bytes.sum() / secs / (1 << 20), outDir.toAbsolutePath());
+    }
+
+    static boolean requested(String[] args) {
+        for (String arg : args) if ("--bulk".equals(arg)) return true;
+        return false;
+    }
+
+    /**
+     * A name waiting to be sent, not before {@code dueNanos}.
+     */
+    private record Pending(String request, int attempt, long dueNanos) implements Delayed {
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(dueNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed o) {
+            return Long.compare(dueNanos, ((Pending) o).dueNanos);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.rsakey;
+
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.operator.ContentSigner;
+import org.bouncycastle.operator.OperatorCreationException;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+
+import java.math.BigInteger;
+import java.security.PrivateKey;
+import java.security.Provider;
+import java.security.PublicKey;
+import java.security.SecureRandom;
+import java.security.Security;
+import java.security.cert.X509Certificate;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Issues certificates signed by the server's issuer key. The provider is resolved once, each thread keeps
+ * its own signer and converter (a {@link ContentSigner} resets after every signature, so it can be reused
+ * by one thread), and serials come from one shared generator: 64 random bits followed by a 32-bit sequence,
+ * unpredictable across restarts and unique within one.
+ */
+final class CertIssuer {
+    private static final long VALIDITY_SECS = 60L * 60 * 24 * 365 * 20; // 20 years
+
+    private final X500Name issuerName;
+    private final PrivateKey issuerKey;
+    private final Provider provider;
+    private final SecureRandom random = new SecureRandom();
+    private final AtomicLong sequence = new AtomicLong();
+    private final ThreadLocal<ContentSigner> signers;
+    private final ThreadLocal<JcaX509CertificateConverter> converters;
+
+    CertIssuer(X500Name issuerName, PrivateKey issuerKey) {
+        this.issuerName = issuerName;
+        this.issuerKey = issuerKey;
+        Provider bc = Security.getProvider(BouncyCastleProvider.PROVIDER_NAME);
+        this.provider = bc != null ? bc : new BouncyCastleProvider();
+        this.signers = ThreadLocal.withInitial(this::newSigner);
+        this.converters = ThreadLocal.withInitial(() -> new JcaX509CertificateConverter().setProvider(provider));
+    }
+
+    X509Certificate issue(String name, PublicKey publicKey) throws Exception {
+        Instant now = Instant.now();
+        return issue(name, publicKey, Date.from(now.minusSeconds(60)), Date.from(now.plusSeconds(VALIDITY_SECS)));
+    }
+
+    /**
+     * Signs certificates for several names in one go on the calling thread, sharing the validity window.
+     */
+    List<X509Certificate> issueAll(List<String> names, List<PublicKey> publicKeys) throws Exception {
+        Instant now = Instant.now();
+        Date notBefore = Date.from(now.minusSeconds(60));
+        Date notAfter = Date.from(now.plusSeconds(VALIDITY_SECS));
+        List<X509Certificate> certs = new ArrayList<>(names.size());
+        for (int i = 0; i < names.size(); ++i) {
+            certs.add(issue(names.get(i), publicKeys.get(i), notBefore, notAfter));
+        }
+        return certs;
+    }
+
+    BigInteger nextSerial() {
+        byte[] prefix = new byte[8];
+        random.nextBytes(prefix);
+        return new BigInteger(1, prefix).shiftLeft(32).or(BigInteger.valueOf(sequence.incrementAndGet() & 0xFFFFFFFFL));
+    }
+
+    private X509Certificate issue(String name, PublicKey publicKey, Date notBefore, Date notAfter) throws Exception {
+        JcaX509v3CertificateBuilder certBuilder = new JcaX509v3CertificateBuilder(
+                issuerName, nextSerial(), notBefore, notAfter, new X500Name("CN=" + name), publicKey
+        );
+        return converters.get().getCertificate(certBuilder.build(signers.get()));
+    }
+
+    private ContentSigner newSigner() {
+        try {
+            return new JcaContentSignerBuilder("SHA256withRSA").setProvider(provider).build(issuerKey);
+        } catch (OperatorCreationException e) {
+            throw new IllegalStateException("Cannot create certificate signer: " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.rsakey;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Static cluster membership: every node is started with the same peer list and its own address in it, so all
+ * nodes build the same {@link HashRing} and agree on the owner of each name without talking to each other.
+ */
+final class Cluster {
+    final String self;
+    private final HashRing ring;
+    private final Map<String, PeerClient> peers = new HashMap<>();
+
+    Cluster(String self, List<String> nodes) {
+        if (!nodes.contains(self)) throw new IllegalArgumentException("Node " + self + " is not in the cluster " + nodes);
+        this.self = self;
+        this.ring = new HashRing(nodes);
+        for (String node : nodes) {
+            if (!node.equals(self)) peers.put(node, new PeerClient(node));
+        }
+    }
+
+    /**
+     * The peer that owns {@code name}, or {@code null} if this node does.
+     */
+    PeerClient ownerOf(String name) {
+        return peers.get(ring.owner(name));
+    }
+
+    int size() {
+        return peers.size() + 1;
+    }
+
+    void shutdown() {
+        for (PeerClient peer : peers.values()) peer.shutdown();
+    }
+}
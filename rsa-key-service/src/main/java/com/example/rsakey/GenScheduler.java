@@ -0,0 +1,142 @@
+package com.example.rsakey;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Priority scheduler for {@link GenTask}s, replacing the single FIFO generation queue.
+ * <p>
+ * Lanes are served strictly in {@link GenTask.Lane} order; inside a lane callers are served round-robin,
+ * so one caller's burst can't starve the others. A task nobody waits on any more is pushed down to the
+ * background lane when it reaches the head of its lane, and is promoted back once a client asks for it again.
+ * Queues may hold stale entries after a move; an entry only counts if the task is still queued in that lane.
+ */
+final class GenScheduler {
+    private final Map<GenTask.Lane, LinkedHashMap<String, ArrayDeque<GenTask>>> lanes = new LinkedHashMap<>();
+    private final int[] queuedByLane = new int[GenTask.Lane.values().length];
+    private int queued;
+
+    GenScheduler() {
+        for (GenTask.Lane lane : GenTask.Lane.values()) lanes.put(lane, new LinkedHashMap<>());
+    }
+
+    synchronized void submit(GenTask task, GenTask.Lane lane, String caller) {
+        task.requestedLane = lane;
+        task.caller = caller;
+        enqueue(task, lane);
+    }
+
+    /**
+     * Registers one more waiter on a task, moving it up if it sits in a lower lane than this request asks for.
+     */
+    synchronized void attach(GenTask task, GenTask.Lane lane, String caller) {
+        task.waiters.incrementAndGet();
+        task.cancelled = false;
+        if (task.state != GenTask.State.QUEUED || task.lane.ordinal() <= lane.ordinal()) return;
+        task.requestedLane = lane;
+        task.caller = caller;
+        dequeued(task);
+        enqueue(task, lane);
+    }
+
+    void release(GenTask task) {
+        if (task.waiters.decrementAndGet() > 0) return;
+        synchronized (this) {
+            if (task.waiters.get() == 0 && task.state == GenTask.State.RUNNING
+                    && task.requestedLane != GenTask.Lane.BACKGROUND) {
+                task.cancelled = true;
+            }
+        }
+    }
+
+    /**
+     * Puts a taken task back in line, after its run was cancelled or its batch cut short: in its own lane if anyone
+     * waits for it, otherwise in background.
+     */
+    synchronized void requeue(GenTask task) {
+        task.cancelled = false;
+        enqueue(task, task.waiters.get() > 0 ? task.requestedLane : GenTask.Lane.BACKGROUND);
+    }
+
+    synchronized void done(GenTask task) {
+        task.state = GenTask.State.DONE;
+    }
+
+    synchronized GenTask take() throws InterruptedException {
+        while (true) {
+            GenTask task = poll();
+            if (task != null) return task;
+            wait();
+        }
+    }
+
+    /**
+     * Blocks for one task, then takes up to {@code max - 1} more that are already queued, in the same order
+     * {@link #take()} would hand them out.
+     */
+    synchronized List<GenTask> takeBatch(int max) throws InterruptedException {
+        List<GenTask> batch = new ArrayList<>();
+        batch.add(take());
+        while (batch.size() < max) {
+            GenTask task = poll();
+            if (task == null) break;
+            batch.add(task);
+        }
+        return batch;
+    }
+
+    synchronized int size() {
+        return queued;
+    }
+
+    /**
+     * Number of queued tasks that would run before a new task submitted to {@code lane}.
+     */
+    synchronized int queuedAhead(GenTask.Lane lane) {
+        int ahead = 0;
+        for (int i = 0; i <= lane.ordinal(); ++i) ahead += queuedByLane[i];
+        return ahead;
+    }
+
+    private void enqueue(GenTask task, GenTask.Lane lane) {
+        task.lane = lane;
+        task.state = GenTask.State.QUEUED;
+        queued++;
+        queuedByLane[lane.ordinal()]++;
+        lanes.get(lane).computeIfAbsent(task.caller, _ -> new ArrayDeque<>()).add(task);
+        notifyAll();
+    }
+
+    private void dequeued(GenTask task) {
+        queued--;
+        queuedByLane[task.lane.ordinal()]--;
+    }
+
+    private GenTask poll() {
+        for (Map.Entry<GenTask.Lane, LinkedHashMap<String, ArrayDeque<GenTask>>> e : lanes.entrySet()) {
+            GenTask.Lane lane = e.getKey();
+            LinkedHashMap<String, ArrayDeque<GenTask>> callers = e.getValue();
+            while (!callers.isEmpty()) {
+                Iterator<Map.Entry<String, ArrayDeque<GenTask>>> it = callers.entrySet().iterator();
+                Map.Entry<String, ArrayDeque<GenTask>> first = it.next();
+                ArrayDeque<GenTask> queue = first.getValue();
+                GenTask task = queue.poll();
+                it.remove();
+                if (!queue.isEmpty()) callers.put(first.getKey(), queue);
+                if (task == null || task.state != GenTask.State.QUEUED || task.lane != lane) continue;
+                dequeued(task);
+                if (lane != GenTask.Lane.BACKGROUND && task.waiters.get() == 0) {
+                    enqueue(task, GenTask.Lane.BACKGROUND);
+                    continue;
+                }
+                task.state = GenTask.State.RUNNING;
+                return task;
+            }
+        }
+        return null;
+    }
+}
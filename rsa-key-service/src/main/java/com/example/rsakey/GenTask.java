@@ -0,0 +1,42 @@
+package com.example.rsakey;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A queued key generation for one name and algorithm; {@link #name} is the key it is stored under. {@link #waiters}
+ * counts the connections still waiting on {@link #future}; lane, caller and state are owned by {@link GenScheduler}.
+ */
+final class GenTask {
+    enum Lane {INTERACTIVE, BULK, BACKGROUND}
+
+    enum State {NEW, QUEUED, RUNNING, DONE}
+
+    final String name;
+    final KeyAlgorithm algorithm;
+    final CompletableFuture<KeyEntry> future;
+    final AtomicInteger waiters = new AtomicInteger();
+    volatile boolean cancelled;
+
+    Lane lane;
+    Lane requestedLane;
+    String caller;
+    State state = State.NEW;
+
+    GenTask(String name, KeyAlgorithm algorithm, CompletableFuture<KeyEntry> future) {
+        this.name = name;
+        this.algorithm = algorithm;
+        this.future = future;
+    }
+
+    /**
+     * The name the certificate is issued to.
+     */
+    String subject() {
+        return KeyAlgorithm.nameOf(name);
+    }
+
+    boolean isCancelled() {
+        return cancelled;
+    }
+}
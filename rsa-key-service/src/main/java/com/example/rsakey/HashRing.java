@@ -0,0 +1,45 @@
+package com.example.rsakey;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Consistent-hash ring over the cluster's nodes. Each node is placed at {@link #VNODES} points, so names spread
+ * evenly and adding a node takes roughly {@code 1/n} of them, a little from every other node.
+ */
+final class HashRing {
+    static final int VNODES = 160;
+
+    private final TreeMap<Long, String> ring = new TreeMap<>();
+
+    HashRing(List<String> nodes) {
+        if (nodes.isEmpty()) throw new IllegalArgumentException("Cluster has no nodes");
+        for (String node : nodes) {
+            for (int i = 0; i < VNODES; ++i) ring.put(hash(node + "#" + i), node);
+        }
+    }
+
+    String owner(String name) {
+        Map.Entry<Long, String> e = ring.ceilingEntry(hash(name));
+        return (e != null ? e : ring.firstEntry()).getValue();
+    }
+
+    /**
+     * 64-bit FNV-1a followed by the MurmurHash3 finalizer; stable across JVMs, which every node relies on.
+     */
+    static long hash(String s) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : s.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.rsakey;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free log-linear histogram of non-negative values: each power of two is split into four buckets,
+ * so any recorded value is reported within 25% of its true value.
+ */
+final class Histogram {
+    private static final int BUCKETS = 248;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+
+    void record(long value) {
+        if (value < 0) value = 0;
+        counts.incrementAndGet(bucket(value));
+        count.increment();
+        sum.add(value);
+    }
+
+    long count() {
+        return count.sum();
+    }
+
+    double mean() {
+        long n = count.sum();
+        return n == 0 ? 0 : (double) sum.sum() / n;
+    }
+
+    /**
+     * Upper bound of the bucket holding the {@code q}-quantile, 0 if nothing was recorded.
+     */
+    long percentile(double q) {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; ++i) total += counts.get(i);
+        if (total == 0) return 0;
+        long rank = (long) Math.ceil(q * total);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; ++i) {
+            seen += counts.get(i);
+            if (seen >= Math.max(1, rank)) return i + 1 < BUCKETS ? lowerBound(i + 1) - 1 : Long.MAX_VALUE;
+        }
+        return Long.MAX_VALUE;
+    }
+
+    String summary() {
+        return String.format("count=%d mean=%.1f p50=%d p90=%d p99=%d p999=%d",
+                count(), mean(), percentile(0.5), percentile(0.9), percentile(0.99), percentile(0.999));
+    }
+
+    static int bucket(long v) {
+        if (v < 4) return (int) v;
+        int exp = 63 - Long.numberOfLeadingZeros(v);
+        int sub = (int) ((v >>> (exp - 2)) & 3);
+        return exp * 4 + sub - 4;
+    }
+
+    static long lowerBound(int bucket) {
+        if (bucket < 4) return bucket;
+        int exp = (bucket + 4) / 4;
+        int sub = (bucket + 4) % 4;
+        return (4L + sub) << (exp - 2);
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.rsakey;
+
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.spec.ECGenParameterSpec;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Key types a client may ask for. {@link #DEFAULT} is used for requests that name no algorithm, and its keys are
+ * stored under the bare name so existing key logs stay valid; every other algorithm is stored under
+ * {@code name + ALGORITHM_SEPARATOR + id}, the same string a client sends to ask for it.
+ */
+enum KeyAlgorithm {
+    RSA_2048("rsa-2048", "RSA", 2048),
+    RSA_3072("rsa-3072", "RSA", 3072),
+    RSA_4096("rsa-4096", "RSA", 4096),
+    RSA_8192("rsa-8192", "RSA", 8192),
+    EC_P256("ec-p256", "EC", 256),
+    ED25519("ed25519", "Ed25519", 255);
+
+    static final KeyAlgorithm DEFAULT = RSA_8192;
+
+    final String id;
+    final String family;
+    final int bits;
+
+    KeyAlgorithm(String id, String family, int bits) {
+        this.id = id;
+        this.family = family;
+        this.bits = bits;
+    }
+
+    /**
+     * The algorithm with this id, or {@code null} if there is none.
+     */
+    static KeyAlgorithm parse(String id) {
+        for (KeyAlgorithm algorithm : values()) {
+            if (algorithm.id.equalsIgnoreCase(id)) return algorithm;
+        }
+        return null;
+    }
+
+    /**
+     * The algorithm a stored or requested key string asks for, or {@code null} if it names an unknown one.
+     */
+    static KeyAlgorithm of(String key) {
+        int sep = key.indexOf(Protocol.ALGORITHM_SEPARATOR);
+        return sep < 0 ? DEFAULT : parse(key.substring(sep + 1));
+    }
+
+    /**
+     * The name part of a stored or requested key string.
+     */
+    static String nameOf(String key) {
+        int sep = key.indexOf(Protocol.ALGORITHM_SEPARATOR);
+        return sep < 0 ? key : key.substring(0, sep);
+    }
+
+    String key(String name) {
+        return this == DEFAULT ? name : name + Protocol.ALGORITHM_SEPARATOR + id;
+    }
+
+    boolean isRsa() {
+        return "RSA".equals(family);
+    }
+
+    /**
+     * Generates a pair with the JDK provider.
+     */
+    KeyPair generate() throws GeneralSecurityException {
+        KeyPairGenerator kpg = KeyPairGenerator.getInstance(family);
+        switch (this) {
+            case EC_P256 -> kpg.initialize(new ECGenParameterSpec("secp256r1"));
+            case ED25519 -> {
+            }
+            default -> kpg.initialize(bits);
+        }
+        return kpg.generateKeyPair();
+    }
+
+    /**
+     * Generates a pair on the caller's behalf: RSA primes are searched on {@code pool} (if any) and the search
+     * stops once {@code cancelled} turns true; other algorithms are cheap enough to just run.
+     */
+    KeyPair generate(ForkJoinPool pool, BooleanSupplier cancelled) throws GeneralSecurityException {
+        return isRsa() ? RsaKeyGen.generate(bits, pool, cancelled) : generate();
+    }
+
+    @Override
+    public String toString() {
+        return id;
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.rsakey;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded in-memory tier for issued keys, in front of the {@link KeyLog} on disk. Entries are kept in LRU order
+ * within a byte budget and, optionally, an entry count. When the cache is full a newcomer only displaces the LRU
+ * victim if a small frequency sketch says it has been asked for more often (TinyLFU admission), so a burst of
+ * one-off names cannot flush the popular ones; a rejected entry is still served from disk next time.
+ */
+final class KeyCache {
+    private final long maxBytes;
+    private final int maxEntries;
+    private final LinkedHashMap<String, KeyEntry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private final FrequencySketch sketch;
+
+    private long bytes;
+    private long evictions;
+    private long rejections;
+
+    KeyCache(long maxBytes, int maxEntries) {
+        this.maxBytes = maxBytes;
+        this.maxEntries = maxEntries;
+        long expected = maxEntries > 0 ? maxEntries : maxBytes / 4096;
+        this.sketch = new FrequencySketch((int) Math.max(1024, Math.min(1 << 22, expected)));
+    }
+
+    /**
+     * Looks {@code name} up and counts the request towards its admission frequency.
+     */
+    synchronized KeyEntry get(String name) {
+        sketch.increment(name);
+        return entries.get(name);
+    }
+
+    /**
+     * Offers an entry to the cache; returns whether it was kept.
+     */
+    synchronized boolean put(String name, KeyEntry entry) {
+        int size = entry.size();
+        if (size > maxBytes) {
+            rejections++;
+            return false;
+        }
+        KeyEntry previous = entries.remove(name);
+        if (previous != null) bytes -= previous.size();
+        if (!fits(size)) {
+            Map.Entry<String, KeyEntry> victim = entries.entrySet().iterator().next();
+            if (sketch.frequency(name) <= sketch.frequency(victim.getKey())) {
+                rejections++;
+                return false;
+            }
+            Iterator<KeyEntry> it = entries.values().iterator();
+            while (!fits(size)) {
+                bytes -= it.next().size();
+                it.remove();
+                evictions++;
+            }
+        }
+        entries.put(name, entry);
+        bytes += size;
+        return true;
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    synchronized long bytes() {
+        return bytes;
+    }
+
+    synchronized long evictions() {
+        return evictions;
+    }
+
+    synchronized String stats() {
+        return "entries=" + entries.size() + ", bytes=" + bytes + ", evictions=" + evictions
+                + ", rejected=" + rejections;
+    }
+
+    private boolean fits(int size) {
+        return bytes + size <= maxBytes && (maxEntries <= 0 || entries.size() < maxEntries);
+    }
+
+    /**
+     * Count-min sketch of 4-bit counters over four hashed rows. All counters are halved once the number of
+     * increments reaches ten times the width, so frequencies follow recent traffic.
+     */
+    private static final class FrequencySketch {
+        private static final int ROWS = 4;
+        private static final int[] SEEDS = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+
+        private final byte[][] counts;
+        private final int mask;
+        private final int resetAt;
+        private int increments;
+
+        FrequencySketch(int width) {
+            int w = Integer.highestOneBit(width - 1) << 1;
+            this.counts = new byte[ROWS][w];
+            this.mask = w - 1;
+            this.resetAt = 10 * w;
+        }
+
+        void increment(String key) {
+            int h = key.hashCode();
+            for (int row = 0; row < ROWS; ++row) {
+                int i = index(h, row);
+                if (counts[row][i] < 15) counts[row][i]++;
+            }
+            if (++increments >= resetAt) halve();
+        }
+
+        int frequency(String key) {
+            int h = key.hashCode();
+            int min = 15;
+            for (int row = 0; row < ROWS; ++row) min = Math.min(min, counts[row][index(h, row)]);
+            return min;
+        }
+
+        private int index(int hash, int row) {
+            int h = hash * SEEDS[row];
+            return (h ^ (h >>> 16)) & mask;
+        }
+
+        private void halve() {
+            for (byte[] row : counts) {
+                for (int i = 0; i < row.length; ++i) row[i] >>= 1;
+            }
+            increments /= 2;
+        }
+    }
+}
@@ -3,16 +3,31 @@ package com.example.rsakey;
 import java.io.*;
 import java.net.InetSocketAddress;
 import java.net.Socket;
-import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
 
 public class KeyClient {
+    private static final long BASE_BACKOFF_MS = 200;
+
     public static void main(String[] args) throws Exception {
+        if (LoadGenerator.requested(args)) {
+            LoadGenerator.main(args);
+            return;
+        }
+        if (BulkFetcher.requested(args)) {
+            BulkFetcher.main(args);
+            return;
+        }
         String host = "localhost";
         int port = 9000;
-        String name = null;
+        List<String> names = new ArrayList<>();
         int delaySecs = 0;
         boolean exitAfterSend = false;
+        boolean pipeline = false;
+        int maxRetries = 5;
+        KeyAlgorithm algorithm = KeyAlgorithm.DEFAULT;
 
         for (int i = 0; i < args.length; ++i) {
             switch (args[i]) {
@@ -23,7 +38,7 @@ public class KeyClient {
                     port = Integer.parseInt(args[++i]);
                     break;
                 case "--name":
-                    name = args[++i];
+                    names.add(args[++i]);
                     break;
                 case "--delay-secs":
                     delaySecs = Integer.parseInt(args[++i]);
@@ -31,55 +46,135 @@ public class KeyClient {
                 case "--exit-after-send":
                     exitAfterSend = true;
                     break;
+                case "--pipeline":
+                    pipeline = true;
+                    break;
+                case "--max-retries":
+                    maxRetries = Integer.parseInt(args[++i]);
+                    break;
+                case "--algorithm":
+                    algorithm = KeyAlgorithm.parse(args[++i]);
+                    if (algorithm == null) {
+                        System.err.println("Unknown algorithm: " + args[i]);
+                        return;
+                    }
+                    break;
                 default:
                     System.err.println("Unknown arg: " + args[i]);
             }
         }
-        if (name == null) {
+        if (names.isEmpty()) {
             System.err.println("name is required");
             return;
         }
+        pipeline |= names.size() > 1;
+
+        List<String> remaining = new ArrayList<>();
+        for (String name : names) remaining.add(algorithm.key(name));
+        for (int attempt = 0; ; ++attempt) {
+            Busy busy = fetch(host, port, remaining, pipeline, delaySecs, exitAfterSend);
+            if (busy == null) return;
+            if (attempt >= maxRetries) {
+                System.err.println("Server busy, giving up on " + busy.names.size() + " name(s) after " + attempt + " retries");
+                System.exit(2);
+            }
+            long backoff = backoffMs(busy.retryAfterMs, attempt);
+            System.out.println("Server busy for " + busy.names.size() + " name(s), retrying in " + backoff + " ms...");
+            Thread.sleep(backoff);
+            remaining = busy.names;
+        }
+    }
 
+    private static Busy fetch(String host, int port, List<String> names, boolean pipeline, int delaySecs,
+                              boolean exitAfterSend) throws Exception {
         try (Socket s = new Socket()) {
             s.connect(new InetSocketAddress(host, port), 5000);
             s.setSoTimeout(0);
-            OutputStream out = s.getOutputStream();
-            out.write(name.getBytes(StandardCharsets.US_ASCII));
-            out.write(0);
+            OutputStream out = new BufferedOutputStream(s.getOutputStream());
+            if (pipeline) out.write(Protocol.PIPELINE);
+            for (String name : names) {
+                out.write(name.getBytes(StandardCharsets.US_ASCII));
+                out.write(0);
+            }
             out.flush();
             if (exitAfterSend) {
                 System.out.println("Exited after send (no read).");
-                return;
+                return null;
             }
+            if (pipeline) s.shutdownOutput();
             if (delaySecs > 0) {
                 System.out.println("Sleeping " + delaySecs + " seconds before reading...");
                 Thread.sleep(delaySecs * 1000L);
             }
-            InputStream in = s.getInputStream();
+            InputStream in = new BufferedInputStream(s.getInputStream());
 
-            byte[] int4 = in.readNBytes(4);
-            if (int4.length < 4) throw new EOFException("Unexpected EOF reading key length");
-            int keyLen = ByteBuffer.wrap(int4).getInt();
-            if (keyLen < 0 || keyLen > 50_000_000) throw new IOException("Invalid keyLen " + keyLen);
-            byte[] keyPem = in.readNBytes(keyLen);
-            if (keyPem.length < keyLen) throw new EOFException("Unexpected EOF reading keyPem");
-
-            byte[] int4b = in.readNBytes(4);
-            if (int4b.length < 4) throw new EOFException("Unexpected EOF reading cert length");
-            int certLen = ByteBuffer.wrap(int4b).getInt();
-            if (certLen < 0 || certLen > 50_000_000) throw new IOException("Invalid certLen " + certLen);
-            byte[] certPem = in.readNBytes(certLen);
-            if (certPem.length < certLen) throw new EOFException("Unexpected EOF reading certPem");
-
-            String keyFile = name + ".key";
-            String crtFile = name + ".crt";
-            try (FileOutputStream fk = new FileOutputStream(keyFile)) {
-                fk.write(keyPem);
+            if (!pipeline) {
+                long retryMs = save(names.getFirst(), in);
+                return retryMs < 0 ? null : new Busy(names, retryMs);
             }
-            try (FileOutputStream fc = new FileOutputStream(crtFile)) {
-                fc.write(certPem);
+            List<String> busyNames = new ArrayList<>();
+            long maxRetryMs = 0;
+            for (int received = 0; received < names.size(); ++received) {
+                int nameLen = Protocol.readInt(in, "name length");
+                if (nameLen == Protocol.BUSY) {
+                    return new Busy(names, Protocol.readInt(in, "retry delay"));
+                }
+                if (nameLen < 0 || nameLen > Protocol.MAX_NAME) throw new IOException("Invalid name length " + nameLen);
+                byte[] nameBytes = in.readNBytes(nameLen);
+                if (nameBytes.length < nameLen) throw new EOFException("Unexpected EOF reading name");
+                String name = new String(nameBytes, StandardCharsets.US_ASCII);
+                long retryMs = save(name, in);
+                if (retryMs >= 0) {
+                    busyNames.add(name);
+                    maxRetryMs = Math.max(maxRetryMs, retryMs);
+                }
             }
-            System.out.println("Saved key -> " + keyFile + " and cert -> " + crtFile);
+            return busyNames.isEmpty() ? null : new Busy(busyNames, maxRetryMs);
+        }
+    }
+
+    /**
+     * Saves one response body to {@code name.key} and {@code name.crt} ({@code name-<algorithm>.*} for a
+     * non-default algorithm), or returns the server's retry hint if the body is a busy frame (-1 when saved).
+     */
+    private static long save(String request, InputStream in) throws IOException {
+        int keyLen = Protocol.readInt(in, "keyPem length");
+        if (keyLen == Protocol.BUSY) return Protocol.readInt(in, "retry delay");
+        if (keyLen < 0 || keyLen > Protocol.MAX_BLOCK) throw new IOException("Invalid keyLen " + keyLen);
+        byte[] keyPem = in.readNBytes(keyLen);
+        if (keyPem.length < keyLen) throw new EOFException("Unexpected EOF reading keyPem");
+        byte[] certPem = Protocol.readBlock(in, "certPem", Protocol.MAX_BLOCK);
+
+        String base = fileBase(request);
+        String keyFile = base + ".key";
+        String crtFile = base + ".crt";
+        try (FileOutputStream fk = new FileOutputStream(keyFile)) {
+            fk.write(keyPem);
+        }
+        try (FileOutputStream fc = new FileOutputStream(crtFile)) {
+            fc.write(certPem);
         }
+        System.out.println("Saved key -> " + keyFile + " and cert -> " + crtFile);
+        return -1;
+    }
+
+    /**
+     * File name, without extension, that a request's key and certificate are saved under.
+     */
+    static String fileBase(String request) {
+        KeyAlgorithm algorithm = KeyAlgorithm.of(request);
+        return KeyAlgorithm.nameOf(request) + (algorithm == KeyAlgorithm.DEFAULT ? "" : "-" + algorithm);
+    }
+
+    /**
+     * How long to wait before retry {@code attempt + 1}: the server's hint or an exponential backoff, whichever
+     * is longer, plus up to 20% jitter.
+     */
+    static long backoffMs(long retryAfterMs, int attempt) {
+        long backoff = Math.max(retryAfterMs, BASE_BACKOFF_MS << Math.min(attempt, 16));
+        return backoff + ThreadLocalRandom.current().nextLong(backoff / 5 + 1);
+    }
+
+    private record Busy(List<String> names, long retryAfterMs) {
     }
 }
@@ -0,0 +1,31 @@
+package com.example.rsakey;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * An issued key, kept only as the framed response body {@code [keyLen][key PEM][certLen][cert PEM]}.
+ */
+final class KeyEntry {
+    private final ByteBuffer response;
+
+    KeyEntry(String privatePem, String certPem) {
+        byte[] keyPem = privatePem.getBytes(StandardCharsets.UTF_8);
+        byte[] certBytes = certPem.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer out = ByteBuffer.allocate(4 + keyPem.length + 4 + certBytes.length);
+        out.putInt(keyPem.length);
+        out.put(keyPem);
+        out.putInt(certBytes.length);
+        out.put(certBytes);
+        out.flip();
+        this.response = out.asReadOnlyBuffer();
+    }
+
+    int size() {
+        return response.capacity();
+    }
+
+    ByteBuffer response() {
+        return response.duplicate();
+    }
+}
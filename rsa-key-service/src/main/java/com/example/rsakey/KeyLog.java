@@ -0,0 +1,265 @@
+package com.example.rsakey;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * Append-only on-disk store of issued keys.
+ * <p>
+ * {@code keys.log} holds the records themselves: {@code [type][nameLen][name]} followed, for entries,
+ * by {@code [keyLen][key DER][certLen][cert DER]}. {@code keys.idx} holds {@code [type][nameLen][name][offset][length]}
+ * for every log record and is memory-mapped at startup, so only names and offsets are read back;
+ * DER payloads are fetched from the log on lookup. Index records may land out of log order, since a batch is
+ * indexed only after its sync; log records the index doesn't cover yet (crash between the two writes) are replayed
+ * into it from the first gap, and a torn tail is truncated.
+ */
+class KeyLog implements Closeable {
+    private static final Logger logger = Logger.getLogger("KeyLog");
+
+    private static final byte ENTRY = 1;
+    private static final byte PENDING = 2;
+    private static final int MAX_NAME = 1024 * 16;
+
+    private final FileChannel log;
+    private final FileChannel index;
+    private final ConcurrentHashMap<String, Long> offsets = new ConcurrentHashMap<>();
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+    // Guards logEnd and the index writes. Never held across a force, so a pending mark from an I/O thread
+    // doesn't wait for a batch's sync.
+    private final Object writeLock = new Object();
+    private long logEnd;
+
+    record StoredKey(byte[] keyDer, byte[] certDer) {
+    }
+
+    KeyLog(Path dir) throws IOException {
+        Files.createDirectories(dir);
+        this.log = FileChannel.open(dir.resolve("keys.log"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.index = FileChannel.open(dir.resolve("keys.idx"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        long start = System.nanoTime();
+        HashMap<Long, Integer> indexed = loadIndex();
+        int replayed = replayLog(indexed);
+        pending.removeAll(offsets.keySet());
+        logger.info("Loaded key log from " + dir + ": " + offsets.size() + " keys, " + pending.size()
+                + " pending, " + replayed + " replayed in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+
+    boolean contains(String name) {
+        return offsets.containsKey(name);
+    }
+
+    List<String> pending() {
+        return new ArrayList<>(pending);
+    }
+
+    StoredKey lookup(String name) throws IOException {
+        Long offset = offsets.get(name);
+        if (offset == null) return null;
+        ByteBuffer header = readAt(offset, 5);
+        header.get();
+        long pos = offset + 5 + header.getInt();
+        int keyLen = readAt(pos, 4).getInt();
+        byte[] keyDer = readAt(pos + 4, keyLen).array();
+        pos += 4 + keyLen;
+        int certLen = readAt(pos, 4).getInt();
+        byte[] certDer = readAt(pos + 4, certLen).array();
+        return new StoredKey(keyDer, certDer);
+    }
+
+    void append(String name, byte[] keyDer, byte[] certDer) throws IOException {
+        appendAll(List.of(name), List.of(keyDer), List.of(certDer));
+    }
+
+    /**
+     * Appends several entries with a single {@code force}, so a batch of generations costs one sync. The entries
+     * are indexed and become visible only once forced.
+     */
+    void appendAll(List<String> names, List<byte[]> keyDers, List<byte[]> certDers) throws IOException {
+        int n = names.size();
+        byte[][] nameBytes = new byte[n][];
+        long[] at = new long[n];
+        int[] lengths = new int[n];
+        for (int i = 0; i < n; ++i) {
+            nameBytes[i] = names.get(i).getBytes(StandardCharsets.US_ASCII);
+            byte[] keyDer = keyDers.get(i);
+            byte[] certDer = certDers.get(i);
+            ByteBuffer rec = ByteBuffer.allocate(1 + 4 + nameBytes[i].length + 4 + keyDer.length + 4 + certDer.length);
+            rec.put(ENTRY).putInt(nameBytes[i].length).put(nameBytes[i]);
+            rec.putInt(keyDer.length).put(keyDer);
+            rec.putInt(certDer.length).put(certDer);
+            rec.flip();
+            lengths[i] = rec.capacity();
+            synchronized (writeLock) {
+                at[i] = writeLog(rec);
+            }
+        }
+        log.force(false);
+        synchronized (writeLock) {
+            for (int i = 0; i < n; ++i) writeIndex(ENTRY, nameBytes[i], at[i], lengths[i]);
+        }
+        for (int i = 0; i < n; ++i) {
+            offsets.put(names.get(i), at[i]);
+            pending.remove(names.get(i));
+        }
+    }
+
+    void markPending(String name) throws IOException {
+        if (offsets.containsKey(name) || !pending.add(name)) return;
+        byte[] nameBytes = name.getBytes(StandardCharsets.US_ASCII);
+        ByteBuffer rec = ByteBuffer.allocate(1 + 4 + nameBytes.length);
+        rec.put(PENDING).putInt(nameBytes.length).put(nameBytes);
+        rec.flip();
+        synchronized (writeLock) {
+            long offset = writeLog(rec);
+            writeIndex(PENDING, nameBytes, offset, rec.capacity());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (writeLock) {
+            try {
+                log.force(true);
+                index.force(true);
+            } finally {
+                log.close();
+                index.close();
+            }
+        }
+    }
+
+    /**
+     * Applies every index record and returns their log offsets and lengths.
+     */
+    private HashMap<Long, Integer> loadIndex() throws IOException {
+        long size = index.size();
+        long logSize = log.size();
+        HashMap<Long, Integer> indexed = new HashMap<>();
+        int good = 0;
+        if (size > 0) {
+            MappedByteBuffer map = index.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            while (map.remaining() >= 5) {
+                int recStart = map.position();
+                byte type = map.get();
+                int nameLen = map.getInt();
+                if ((type != ENTRY && type != PENDING) || nameLen < 0 || nameLen > MAX_NAME
+                        || map.remaining() < nameLen + 12) {
+                    map.position(recStart);
+                    break;
+                }
+                byte[] nameBytes = new byte[nameLen];
+                map.get(nameBytes);
+                long offset = map.getLong();
+                int length = map.getInt();
+                if (offset < 0 || length <= 0 || offset + length > logSize) {
+                    map.position(recStart);
+                    break;
+                }
+                apply(type, new String(nameBytes, StandardCharsets.US_ASCII), offset);
+                indexed.put(offset, length);
+                good = map.position();
+            }
+        }
+        if (good < size) {
+            logger.warning("Truncating torn key index tail at " + good + " of " + size + " bytes");
+            index.truncate(good);
+        }
+        index.position(good);
+        return indexed;
+    }
+
+    private int replayLog(HashMap<Long, Integer> indexed) throws IOException {
+        long size = log.size();
+        long pos = 0;
+        Integer length;
+        while ((length = indexed.get(pos)) != null) pos += length;
+        int replayed = 0;
+        while (pos < size) {
+            int recLength = recordLength(pos, size);
+            if (recLength < 0) {
+                logger.warning("Truncating torn key log tail at " + pos + " of " + size + " bytes");
+                log.truncate(pos);
+                break;
+            }
+            if (!indexed.containsKey(pos)) {
+                ByteBuffer header = readAt(pos, 5);
+                byte type = header.get();
+                byte[] nameBytes = readAt(pos + 5, header.getInt()).array();
+                apply(type, new String(nameBytes, StandardCharsets.US_ASCII), pos);
+                writeIndex(type, nameBytes, pos, recLength);
+                ++replayed;
+            }
+            pos += recLength;
+        }
+        logEnd = pos;
+        return replayed;
+    }
+
+    private int recordLength(long pos, long size) throws IOException {
+        if (size - pos < 5) return -1;
+        ByteBuffer header = readAt(pos, 5);
+        byte type = header.get();
+        int nameLen = header.getInt();
+        if (nameLen < 0 || nameLen > MAX_NAME) return -1;
+        long len = 5L + nameLen;
+        if (type == PENDING) return pos + len <= size ? (int) len : -1;
+        if (type != ENTRY) return -1;
+        for (int part = 0; part < 2; ++part) {
+            if (size - pos - len < 4) return -1;
+            int partLen = readAt(pos + len, 4).getInt();
+            if (partLen < 0) return -1;
+            len += 4L + partLen;
+        }
+        return pos + len <= size && len <= Integer.MAX_VALUE ? (int) len : -1;
+    }
+
+    private void apply(byte type, String name, long offset) {
+        if (type == ENTRY) {
+            offsets.put(name, offset);
+        } else {
+            pending.add(name);
+        }
+    }
+
+    private long writeLog(ByteBuffer rec) throws IOException {
+        long offset = logEnd;
+        long pos = offset;
+        while (rec.hasRemaining()) pos += log.write(rec, pos);
+        logEnd = pos;
+        return offset;
+    }
+
+    private void writeIndex(byte type, byte[] nameBytes, long offset, int length) throws IOException {
+        ByteBuffer rec = ByteBuffer.allocate(1 + 4 + nameBytes.length + 8 + 4);
+        rec.put(type).putInt(nameBytes.length).put(nameBytes).putLong(offset).putInt(length);
+        rec.flip();
+        while (rec.hasRemaining()) index.write(rec);
+    }
+
+    private ByteBuffer readAt(long pos, int len) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(len);
+        while (buf.hasRemaining()) {
+            int r = log.read(buf, pos + buf.position());
+            if (r < 0) throw new EOFException("Unexpected EOF in key log at " + pos);
+        }
+        buf.flip();
+        return buf;
+    }
+}
@@ -0,0 +1,170 @@
+package com.example.rsakey;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Pool of pre-generated key pairs filled by its own generator threads.
+ * Refilling starts once the depth drops to the low watermark and stops at the high watermark,
+ * so idle time is spent on prime searches instead of the first request for a new name.
+ */
+class KeyPool {
+    private static final Logger logger = Logger.getLogger("KeyPool");
+
+    private final KeyAlgorithm algorithm;
+    private final int lowWatermark;
+    private final int highWatermark;
+    private final BlockingQueue<KeyPair> pairs;
+    private final Thread[] fillThreads;
+    private final Thread reportThread;
+    private final long reportIntervalMs;
+
+    private final Object refillLock = new Object();
+    private boolean refilling = true;
+    private volatile boolean running = true;
+
+    private final AtomicLong generated = new AtomicLong();
+    private final AtomicLong taken = new AtomicLong();
+    private final AtomicLong emptyHits = new AtomicLong();
+
+    KeyPool(KeyAlgorithm algorithm, int size, int lowWatermark, int highWatermark, int threadsCount, int reportSecs) {
+        if (size < 0 || lowWatermark < 0 || highWatermark > size || lowWatermark > highWatermark) {
+            throw new IllegalArgumentException("Invalid pool bounds: size=" + size
+                    + ", low=" + lowWatermark + ", high=" + highWatermark);
+        }
+        this.algorithm = algorithm;
+        this.lowWatermark = lowWatermark;
+        this.highWatermark = highWatermark;
+        this.pairs = new LinkedBlockingQueue<>(Math.max(1, size));
+        this.reportIntervalMs = reportSecs * 1000L;
+
+        int count = size == 0 ? 0 : threadsCount;
+        this.fillThreads = new Thread[count];
+        for (int i = 0; i < count; ++i) {
+            fillThreads[i] = new Thread(this::fillLoop, "Pool-" + algorithm + "-" + i);
+            fillThreads[i].setDaemon(true);
+            fillThreads[i].setPriority(Thread.MIN_PRIORITY);
+        }
+        if (count > 0 && reportSecs > 0) {
+            reportThread = new Thread(this::reportLoop, "Pool-" + algorithm + "-Report");
+            reportThread.setDaemon(true);
+        } else {
+            reportThread = null;
+        }
+        logger.info("Key pool " + algorithm + ": size=" + size + ", low=" + lowWatermark + ", high=" + highWatermark
+                + ", threads=" + count);
+    }
+
+    /**
+     * Starts filling; until then {@link #take()} finds the pool empty.
+     */
+    void start() {
+        for (Thread t : fillThreads) t.start();
+        if (reportThread != null) reportThread.start();
+    }
+
+    /**
+     * Takes a ready pair, or returns {@code null} when the pool has run empty
+     * and the caller has to generate one itself.
+     */
+    KeyPair take() {
+        KeyPair kp = pairs.poll();
+        if (kp == null) {
+            emptyHits.incrementAndGet();
+        } else {
+            taken.incrementAndGet();
+        }
+        if (pairs.size() <= lowWatermark) startRefill();
+        return kp;
+    }
+
+    int depth() {
+        return pairs.size();
+    }
+
+    long generated() {
+        return generated.get();
+    }
+
+    long taken() {
+        return taken.get();
+    }
+
+    long emptyHits() {
+        return emptyHits.get();
+    }
+
+    String stats() {
+        return "depth=" + depth() + ", generated=" + generated() + ", taken=" + taken()
+                + ", empty=" + emptyHits();
+    }
+
+    void shutdown() {
+        running = false;
+        synchronized (refillLock) {
+            refillLock.notifyAll();
+        }
+        for (Thread t : fillThreads) t.interrupt();
+        if (reportThread != null) reportThread.interrupt();
+    }
+
+    static KeyPair generate(int keySize) throws NoSuchAlgorithmException {
+        KeyPairGenerator kpg = KeyPairGenerator.getInstance("RSA");
+        kpg.initialize(keySize);
+        return kpg.generateKeyPair();
+    }
+
+    private void startRefill() {
+        synchronized (refillLock) {
+            if (!refilling) {
+                refilling = true;
+                refillLock.notifyAll();
+            }
+        }
+    }
+
+    private void fillLoop() {
+        while (running) {
+            try {
+                synchronized (refillLock) {
+                    while (running && !refilling) refillLock.wait();
+                }
+                if (!running) break;
+                KeyPair kp = algorithm.generate();
+                if (pairs.offer(kp)) generated.incrementAndGet();
+                if (pairs.size() >= highWatermark) {
+                    synchronized (refillLock) {
+                        if (pairs.size() >= highWatermark) refilling = false;
+                    }
+                }
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Throwable t) {
+                logger.log(Level.SEVERE, "Error in pool thread: " + t.getMessage(), t);
+            }
+        }
+    }
+
+    private void reportLoop() {
+        long lastGenerated = 0;
+        while (running) {
+            try {
+                Thread.sleep(reportIntervalMs);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            long g = generated();
+            double perMinute = (g - lastGenerated) * 60_000.0 / reportIntervalMs;
+            lastGenerated = g;
+            logger.info("Key pool " + algorithm + " " + stats() + String.format(", refill=%.2f/min", perMinute));
+        }
+    }
+}
@@ -1,22 +1,17 @@
 package com.example.rsakey;
 
 import org.bouncycastle.asn1.x500.X500Name;
-import org.bouncycastle.cert.X509CertificateHolder;
-import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
-import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.bouncycastle.openssl.PEMEncryptedKeyPair;
 import org.bouncycastle.openssl.PEMKeyPair;
 import org.bouncycastle.openssl.PEMParser;
 import org.bouncycastle.openssl.jcajce.JcaPEMKeyConverter;
-import org.bouncycastle.operator.ContentSigner;
-import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.Reader;
-import java.math.BigInteger;
 import java.net.InetSocketAddress;
 import java.net.StandardSocketOptions;
 import java.nio.ByteBuffer;
@@ -25,87 +20,272 @@ import java.nio.channels.Selector;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.security.*;
 import java.security.cert.CertificateEncodingException;
+import java.security.cert.CertificateFactory;
 import java.security.cert.X509Certificate;
 import java.security.spec.PKCS8EncodedKeySpec;
-import java.time.Instant;
-import java.util.Date;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 public class KeyServer {
     private static final Logger logger = Logger.getLogger("KeyServer");
+    private static final long WHEEL_TICK_MS = 100;
+    private static final int WHEEL_SLOTS = 512;
+    private static final LogLimiter connectionLimitLog = new LogLimiter(1, TimeUnit.SECONDS);
+    private static final LogLimiter backlogLog = new LogLimiter(1, TimeUnit.SECONDS);
+    private static final LogLimiter outboundLog = new LogLimiter(1, TimeUnit.SECONDS);
+    private static final LogLimiter reapLog = new LogLimiter(1, TimeUnit.SECONDS);
+    private static final LogLimiter forwardLog = new LogLimiter(1, TimeUnit.SECONDS);
+    private static final LogLimiter badRequestLog = new LogLimiter(1, TimeUnit.SECONDS);
 
-    private final ConcurrentHashMap<String, CompletableFuture<KeyEntry>> store = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, GenTask> inFlight = new ConcurrentHashMap<>();
 
-    private final BlockingQueue<GenTask> genQueue = new LinkedBlockingQueue<>();
-    private final Writer writer;
-    private final PrivateKey issuerPrivateKey;
-    private final X500Name issuerName;
+    private final EnumMap<KeyAlgorithm, Generator> generators = new EnumMap<>(KeyAlgorithm.class);
+    private final Reactor[] reactors;
+    private final BlockingEngine blocking;
+    private final KeyCache cache;
+    private final KeyLog keyLog;
+    private final AdmissionControl admission;
+    private final ForkJoinPool primePool;
+    private final ExecutorService loader =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("Load-", 0).factory());
+    private final ServerMetrics metrics;
+    private final Callable<PrivateKey> issuerKey;
+    private final String issuerName;
+    private volatile CertIssuer certIssuer;
+    private final int issueBatch;
+    private final long readTimeoutNanos;
+    private final long idleTimeoutNanos;
+    private final Engine engine;
 
     private final Selector selector;
     private final ServerSocketChannel serverChannel;
 
     private volatile boolean running = true;
+    private volatile Cluster cluster;
 
-    public KeyServer(int port, PrivateKey issuerPrivateKey, String issuerNameStr, int genThreadsCount) throws Exception {
-        this.issuerPrivateKey = issuerPrivateKey;
-        this.issuerName = new X500Name(issuerNameStr);
-        this.writer = new Writer();
+    private int nextReactor;
+
+    /**
+     * Serves the algorithms {@code pools} has a pool for, each with {@link AdmissionControl#threads} generator threads.
+     * With {@code lazyStart} the server listens first and loads the issuer key, registers its MBean and starts
+     * filling the pools on a warm-up thread afterwards; stored and cached keys are served meanwhile, and new ones
+     * wait for the issuer.
+     */
+    public KeyServer(int port, Callable<PrivateKey> issuerKey, String issuerNameStr, int ioThreadsCount,
+                     int primeWorkers, Map<KeyAlgorithm, KeyPool> pools, KeyCache cache, KeyLog keyLog,
+                     AdmissionControl admission, int issueBatch, long readTimeoutMs, long idleTimeoutMs,
+                     boolean lazyStart, Engine engine) throws Exception {
+        this.issuerKey = issuerKey;
+        this.issuerName = issuerNameStr;
+        this.issueBatch = Math.max(1, issueBatch);
+        this.readTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(readTimeoutMs);
+        this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMs);
+        this.engine = engine;
+        this.reactors = new Reactor[engine == Engine.NIO ? ioThreadsCount : 0];
+        for (int i = 0; i < reactors.length; ++i) reactors[i] = new Reactor("IO-" + i);
+        this.blocking = engine == Engine.VIRTUAL ? new BlockingEngine() : null;
+        for (Map.Entry<KeyAlgorithm, KeyPool> e : pools.entrySet()) {
+            generators.put(e.getKey(), new Generator(e.getKey(), e.getValue()));
+        }
+        if (!generators.containsKey(KeyAlgorithm.DEFAULT)) {
+            throw new IllegalArgumentException("The default algorithm " + KeyAlgorithm.DEFAULT + " must be enabled");
+        }
+        this.cache = cache;
+        this.keyLog = keyLog;
+        this.admission = admission;
+        this.primePool = primeWorkers > 1 ? new ForkJoinPool(primeWorkers) : null;
+        List<AlgorithmMetrics> algorithmMetrics = new ArrayList<>();
+        for (Generator generator : generators.values()) {
+            algorithmMetrics.add(new AlgorithmMetrics(generator.algorithm, generator.scheduler::size,
+                    generator.generating::get, generator.pool));
+        }
+        this.metrics = new ServerMetrics(this::queueDepth, this::generating, this::openConnections,
+                this::backlogBytes, algorithmMetrics, cache);
+        if (!lazyStart) warmUp();
 
         this.selector = Selector.open();
         this.serverChannel = ServerSocketChannel.open();
-        serverChannel.bind(new InetSocketAddress(port));
-        serverChannel.configureBlocking(false);
         serverChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
-        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
-        logger.info("Server listening on port " + port);
+        serverChannel.bind(new InetSocketAddress(port));
+        if (blocking == null) {
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        }
+        if (lazyStart) {
+            long start = System.nanoTime();
+            Thread warmUp = new Thread(() -> {
+                try {
+                    warmUp();
+                    logger.info("Warm-up finished " + (System.nanoTime() - start) / 1_000_000 + " ms after listening");
+                } catch (Exception e) {
+                    logger.log(Level.SEVERE, "Warm-up failed, new keys cannot be issued: " + e.getMessage(), e);
+                }
+            }, "Warm-up");
+            warmUp.setDaemon(true);
+            warmUp.start();
+        }
 
-        Thread[] genThreads = new Thread[genThreadsCount];
-        for (int i = 0; i < genThreadsCount; ++i) {
-            genThreads[i] = new Thread(this::genLoop, "Gen-" + i);
-            genThreads[i].setDaemon(true);
-            genThreads[i].start();
+        for (Generator generator : generators.values()) {
+            for (int i = 0; i < admission.threads(generator.algorithm); ++i) {
+                Thread genThread = new Thread(() -> genLoop(generator), "Gen-" + generator.algorithm + "-" + i);
+                genThread.setDaemon(true);
+                genThread.start();
+            }
+        }
+        for (int i = 0; i < reactors.length; ++i) {
+            Thread ioThread = new Thread(reactors[i], reactors[i].name);
+            ioThread.setDaemon(true);
+            ioThread.start();
+        }
+
+        for (String name : keyLog.pending()) {
+            KeyAlgorithm algorithm = KeyAlgorithm.of(name);
+            Generator generator = algorithm == null ? null : generators.get(algorithm);
+            if (generator == null) {
+                logger.warning("Not resuming pending generation for '" + name + "': algorithm not enabled");
+                continue;
+            }
+            GenTask task = new GenTask(name, algorithm, new CompletableFuture<>());
+            if (inFlight.putIfAbsent(name, task) == null) {
+                generator.scheduler.submit(task, GenTask.Lane.BACKGROUND, "resume");
+                logger.info("Resumed pending generation for '" + name + "'");
+            }
         }
-        Thread writerThread = new Thread(writer, "Writer");
-        writerThread.setDaemon(true);
-        writerThread.start();
+    }
+
+    /**
+     * Everything the server needs before issuing its first certificate but not before answering from the store.
+     */
+    private void warmUp() throws Exception {
+        certIssuer();
+        metrics.registerMBean();
+        for (Generator generator : generators.values()) generator.pool.start();
+    }
+
+    private CertIssuer certIssuer() throws Exception {
+        CertIssuer issuer = certIssuer;
+        if (issuer != null) return issuer;
+        synchronized (issuerKey) {
+            if (certIssuer == null) certIssuer = new CertIssuer(new X500Name(issuerName), issuerKey.call());
+            return certIssuer;
+        }
+    }
+
+    int port() throws IOException {
+        return ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
     }
 
     public void run() throws Exception {
+        logger.info("Server listening on port " + port() + " (" + engine + " engine)");
+        if (blocking != null) blocking.acceptLoop();
         while (running) {
             selector.select();
             var it = selector.selectedKeys().iterator();
             while (it.hasNext()) {
                 var key = it.next();
                 it.remove();
-                try {
-                    if (!key.isValid()) continue;
-                    if (key.isAcceptable()) accept(key);
-                    else if (key.isReadable()) read(key);
-                } catch (IOException ex) {
-                    logger.log(Level.WARNING, "IO error on key: " + ex.getMessage(), ex);
-                    closeKeyChannel(key);
-                } catch (Exception ex) {
-                    logger.log(Level.SEVERE, "Error handling key: " + ex.getMessage(), ex);
-                    closeKeyChannel(key);
-                }
+                if (key.isValid() && key.isAcceptable()) accept(key);
             }
         }
         selector.close();
         serverChannel.close();
     }
 
-    private void accept(SelectionKey key) throws IOException {
+    private void accept(SelectionKey key) {
         ServerSocketChannel ssc = (ServerSocketChannel) key.channel();
-        SocketChannel sc = ssc.accept();
-        if (sc == null) return;
-        sc.configureBlocking(false);
-        sc.setOption(StandardSocketOptions.TCP_NODELAY, true);
-        sc.register(selector, SelectionKey.OP_READ, new ClientContext(sc));
-        logger.info("Accepted connection from " + sc.getRemoteAddress());
+        SocketChannel sc = null;
+        try {
+            while ((sc = ssc.accept()) != null) {
+                sc.configureBlocking(false);
+                sc.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                if (!admission.acceptConnection(openConnections())) {
+                    rejectConnection(sc);
+                    continue;
+                }
+                Reactor reactor = pickReactor();
+                reactor.register(sc, System.nanoTime());
+                metrics.accepted.increment();
+                if (logger.isLoggable(Level.FINE)) {
+                    logger.fine("Accepted connection from " + sc.getRemoteAddress() + " on " + reactor.name);
+                }
+            }
+        } catch (IOException ex) {
+            logger.log(Level.WARNING, "Accept failed: " + ex.getMessage(), ex);
+            if (sc != null) {
+                try {
+                    sc.close();
+                } catch (IOException ignore) {}
+            }
+        }
+    }
+
+    private int openConnections() {
+        int open = blocking != null ? blocking.live.size() : 0;
+        for (Reactor reactor : reactors) open += reactor.load();
+        return open;
+    }
+
+    private int queueDepth() {
+        int depth = 0;
+        for (Generator generator : generators.values()) depth += generator.scheduler.size();
+        return depth;
+    }
+
+    private int generating() {
+        int running = 0;
+        for (Generator generator : generators.values()) running += generator.generating.get();
+        return running;
+    }
+
+    private long backlogBytes() {
+        long bytes = blocking != null ? blocking.backlog.get() : 0;
+        for (Reactor reactor : reactors) bytes += reactor.backlog.get();
+        return bytes;
+    }
+
+    ServerMetrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * From now on, names owned by another node of {@code cluster} are forwarded to it instead of served here.
+     */
+    void joinCluster(Cluster cluster) {
+        this.cluster = cluster;
+        logger.info("Joined cluster of " + cluster.size() + " nodes as " + cluster.self);
+    }
+
+    private void rejectConnection(SocketChannel sc) throws IOException {
+        long retryMs = admission.connectionRetryMs();
+        metrics.rejected.increment();
+        try (sc) {
+            sc.write(Protocol.busy(retryMs));
+        }
+        connectionLimitLog.log(logger, Level.WARNING,
+                () -> "Connection limit reached, rejected connection (retry after " + retryMs + " ms)");
+    }
+
+    private Reactor pickReactor() {
+        int start = nextReactor;
+        nextReactor = (start + 1) % reactors.length;
+        Reactor best = reactors[start];
+        for (int i = 1; i < reactors.length; ++i) {
+            Reactor candidate = reactors[(start + i) % reactors.length];
+            if (candidate.load() < best.load()) best = candidate;
+        }
+        return best;
     }
 
     private void read(SelectionKey key) throws IOException {
@@ -114,111 +294,330 @@ public class KeyServer {
         ByteBuffer buf = ctx.readBuffer;
         int r = sc.read(buf);
         if (r == -1) {
-            logger.info("Client closed connection before finishing name: " + sc.getRemoteAddress());
-            closeKeyChannel(key);
+            ctx.inputClosed = true;
+            if (!ctx.pipelined || (ctx.outstanding == 0 && ctx.out.isEmpty())) {
+                if (logger.isLoggable(Level.FINE)) {
+                    logger.fine("Client closed connection before finishing name: " + sc.getRemoteAddress());
+                }
+                closeKeyChannel(key);
+            } else {
+                key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+            }
             return;
         }
         buf.flip();
-        while (buf.hasRemaining()) {
-            byte b = buf.get();
-            if (b == 0) {
-                int nameLen = ctx.nameBytes.size();
-                byte[] nameBytes = new byte[nameLen];
-                for (int i = 0; i < nameLen; ++i) nameBytes[i] = ctx.nameBytes.get(i);
-                String name = new String(nameBytes, StandardCharsets.US_ASCII);
-                logger.info("Received name '" + name + "' from " + sc.getRemoteAddress());
-                handleNameForClient(name, sc);
-                ctx.nameBytes.clear();
+        if (ctx.nameSeen && !ctx.pipelined) {
+            buf.clear();
+            return;
+        }
+        if (!ctx.modeKnown && buf.hasRemaining()) {
+            ctx.modeKnown = true;
+            byte mode = buf.get(buf.position());
+            if (mode == Protocol.PIPELINE || mode == Protocol.FORWARD) {
+                ctx.pipelined = true;
+                ctx.forwarded = mode == Protocol.FORWARD;
+                buf.get();
+            }
+        }
+        byte[] arr = buf.array();
+        int start = buf.position();
+        for (int i = start; i < buf.limit(); ++i) {
+            if (arr[i] != 0) continue;
+            String name = new String(arr, start, i - start, StandardCharsets.US_ASCII);
+            start = i + 1;
+            if (logger.isLoggable(Level.FINE)) {
+                logger.fine("Received name '" + name + "' from " + sc.getRemoteAddress());
+            }
+            ctx.nameSeen = true;
+            ctx.outstanding++;
+            ctx.awaitingSince = System.nanoTime();
+            handleNameForClient(name, ctx);
+            if (!ctx.pipelined) {
                 buf.clear();
                 return;
-            } else {
-                ctx.nameBytes.add(b);
-                if (ctx.nameBytes.size() > 1024 * 16) {
-                    logger.warning("Name too long, closing connection");
-                    closeKeyChannel(key);
-                    return;
-                }
             }
         }
-        buf.clear();
+        buf.position(start);
+        buf.compact();
+        if (!buf.hasRemaining()) {
+            if (buf.capacity() > Protocol.MAX_NAME) {
+                badRequestLog.log(logger, Level.WARNING, () -> "Name too long, closing connection");
+                closeKeyChannel(key);
+                return;
+            }
+            ByteBuffer bigger = ByteBuffer.allocate(Math.min(buf.capacity() * 2, Protocol.MAX_NAME + 1));
+            buf.flip();
+            bigger.put(buf);
+            ctx.readBuffer = bigger;
+        }
+    }
+
+    private void write(SelectionKey key) throws IOException {
+        ClientContext ctx = (ClientContext) key.attachment();
+        SocketChannel sc = (SocketChannel) key.channel();
+        long written = sc.write(ctx.out.toArray(new ByteBuffer[0]));
+        ctx.reactor.backlog.addAndGet(-written);
+        if (written > 0) ctx.lastWriteNanos = System.nanoTime();
+        if (written > 0 && ctx.firstByteNanos == 0) {
+            ctx.firstByteNanos = System.nanoTime();
+            metrics.ttfbMicros.record((ctx.firstByteNanos - ctx.acceptedNanos) / 1000);
+        }
+        while (!ctx.out.isEmpty() && !ctx.out.peek().hasRemaining()) ctx.out.poll();
+        if (!ctx.out.isEmpty()) return;
+        if (!ctx.pipelined || (ctx.inputClosed && ctx.outstanding == 0)) {
+            metrics.endToEndMicros.record((System.nanoTime() - ctx.acceptedNanos) / 1000);
+            closeKeyChannel(key);
+        } else {
+            key.interestOps(ctx.inputClosed ? 0 : SelectionKey.OP_READ);
+        }
+    }
+
+    /**
+     * When the connection should be reaped if nothing changes, or 0 while it is only waiting on a generation:
+     * a client has {@code readTimeout} to send each name and must keep reading queued responses at least once
+     * every {@code idleTimeout}. A non-positive timeout disables that deadline.
+     */
+    private long deadline(ClientContext ctx) {
+        return deadline(!ctx.out.isEmpty(), ctx.lastWriteNanos, ctx.outstanding > 0 || ctx.inputClosed || ctx.forwarded,
+                ctx.awaitingSince);
+    }
+
+    private long deadline(boolean unsent, long lastWriteNanos, boolean noMoreNames, long awaitingSince) {
+        if (unsent) return idleTimeoutNanos > 0 ? lastWriteNanos + idleTimeoutNanos : 0;
+        if (noMoreNames) return 0;
+        return readTimeoutNanos > 0 ? awaitingSince + readTimeoutNanos : 0;
     }
 
     private void closeKeyChannel(SelectionKey key) {
+        if (key.isValid() && key.attachment() instanceof ClientContext ctx) {
+            ctx.reactor.connections.decrementAndGet();
+            for (ByteBuffer unsent : ctx.out) ctx.reactor.backlog.addAndGet(-unsent.remaining());
+            ctx.out.clear();
+            release(ctx);
+        }
         try {
             key.channel().close();
         } catch (IOException ignore) {}
         key.cancel();
     }
 
-    private void handleNameForClient(String name, SocketChannel sc) {
-        CompletableFuture<KeyEntry> newFuture = new CompletableFuture<>();
-        CompletableFuture<KeyEntry> existing = store.putIfAbsent(name, newFuture);
-        final CompletableFuture<KeyEntry> fut;
+    /**
+     * {@code body}, or a busy frame if queuing it would take the server past its outbound buffer limit.
+     */
+    private ByteBuffer admitResponse(String name, ByteBuffer body) {
+        if (admission.acceptResponse(backlogBytes(), body.remaining())) return body;
+        long retryMs = admission.connectionRetryMs();
+        outboundLog.log(logger, Level.WARNING,
+                () -> "Outbound buffers full, answering '" + name + "' with busy (retry after " + retryMs + " ms)");
+        metrics.rejected.increment();
+        return Protocol.busy(retryMs);
+    }
+
+    /**
+     * Drops {@code client}'s interest in the generations it was waiting on, so unwanted ones can be deferred.
+     */
+    private void release(Client client) {
+        GenTask task;
+        while ((task = client.waitingOn.poll()) != null) {
+            if (!task.future.isDone()) generators.get(task.algorithm).scheduler.release(task);
+        }
+    }
+
+    /**
+     * Handles one name read from {@code ctx}, scheduled under the lane and caller of the connection, or for a
+     * forwarded one under those of the client that asked the forwarding node.
+     */
+    private void handleNameForClient(String request, Client ctx) {
+        if (!ctx.forwarded) {
+            handleRequest(request, ctx.pipelined ? GenTask.Lane.BULK : GenTask.Lane.INTERACTIVE, ctx.caller, ctx);
+            return;
+        }
+        int sep = request.indexOf(Protocol.ORIGIN_SEPARATOR);
+        if (sep < 1) {
+            metrics.requests.increment();
+            badRequestLog.log(logger, Level.WARNING,
+                    () -> "Forwarded request without origin from " + ctx.caller + ", closing connection");
+            ctx.close();
+            return;
+        }
+        GenTask.Lane lane = request.charAt(0) == Protocol.INTERACTIVE ? GenTask.Lane.INTERACTIVE : GenTask.Lane.BULK;
+        handleRequest(request.substring(sep + 1), lane, request.substring(1, sep), ctx);
+    }
+
+    /**
+     * Serves {@code request} from the memory tier, joins a load or generation already in flight for it, or starts
+     * one: a disk-tier load from the key log on a loader thread if the key was issued before, otherwise a
+     * generation. Either way the task stays in the in-flight map until its future completes. The request is
+     * a name with an optional algorithm suffix; it is echoed as-is in name tags, while the cache, in-flight map and
+     * key log use the normalized key.
+     */
+    private void handleRequest(String request, GenTask.Lane lane, String caller, Client ctx) {
+        metrics.requests.increment();
+        KeyAlgorithm algorithm = KeyAlgorithm.of(request);
+        Generator generator = algorithm == null ? null : generators.get(algorithm);
+        if (generator == null) {
+            badRequestLog.log(logger, Level.WARNING,
+                    () -> "Unsupported algorithm requested by " + ctx.caller + ", closing connection");
+            ctx.close();
+            return;
+        }
+        String name = algorithm.key(KeyAlgorithm.nameOf(request));
+        Cluster cluster = this.cluster;
+        PeerClient owner = cluster == null || ctx.forwarded ? null : cluster.ownerOf(name);
+        if (owner != null) {
+            forward(request, lane == GenTask.Lane.INTERACTIVE, ctx, owner);
+            return;
+        }
+        KeyEntry cached = cache.get(name);
+        if (cached != null) {
+            metrics.cacheHits.increment();
+            ctx.send(request, cached.response());
+            return;
+        }
+        metrics.cacheMisses.increment();
+        GenScheduler scheduler = generator.scheduler;
+        if (!inFlight.containsKey(name) && !keyLog.contains(name)) {
+            long retryMs = admission.retryAfterMs(algorithm, scheduler.queuedAhead(lane), generator.generating.get());
+            if (retryMs > 0) {
+                backlogLog.log(logger, Level.WARNING,
+                        () -> "Generation backlog full, rejected '" + name + "' (retry after " + retryMs + " ms)");
+                metrics.rejected.increment();
+                ctx.send(request, Protocol.busy(retryMs));
+                return;
+            }
+        }
+        GenTask newTask = new GenTask(name, algorithm, new CompletableFuture<>());
+        GenTask existing = inFlight.putIfAbsent(name, newTask);
+        final GenTask task;
         if (existing == null) {
-            fut = newFuture;
-            genQueue.add(new GenTask(name, newFuture));
-            logger.info("Enqueued generation for '" + name + "'");
+            task = newTask;
+            task.waiters.incrementAndGet();
+            ctx.waitingOn.add(task);
+            if (keyLog.contains(name)) {
+                loader.execute(() -> loadStored(task, lane, caller));
+            } else {
+                startGeneration(task, lane, caller);
+            }
         } else {
-            fut = existing;
-            logger.info("Using existing future for '" + name + "'");
+            task = existing;
+            if (!task.future.isDone()) {
+                scheduler.attach(task, lane, caller);
+                ctx.waitingOn.add(task);
+            }
+            logger.fine(() -> "Using existing future for '" + name + "'");
         }
 
-        fut.whenComplete((ke, ex) -> {
+        task.future.whenComplete((ke, ex) -> {
+            ctx.waitingOn.remove(task);
             if (ex != null) {
                 logger.log(Level.WARNING, "Generation failed for " + name + ": " + ex.getMessage(), ex);
-                try {
-                    sc.close();
-                } catch (IOException ignore) {}
+                ctx.close();
             } else {
-                try {
-                    byte[] keyPem = ke.privatePem.getBytes(StandardCharsets.UTF_8);
-                    byte[] certPem = ke.certPem.getBytes(StandardCharsets.UTF_8);
-                    ByteBuffer out = ByteBuffer.allocate(4 + keyPem.length + 4 + certPem.length);
-                    out.putInt(keyPem.length);
-                    out.put(keyPem);
-                    out.putInt(certPem.length);
-                    out.put(certPem);
-                    out.flip();
-                    writer.enqueue(sc, out);
-                } catch (Throwable t) {
-                    logger.log(Level.WARNING, "Failed to prepare send to client: " + t.getMessage(), t);
-                    try {
-                        sc.close();
-                    } catch (IOException ignore) {}
-                }
+                ctx.send(request, ke.response());
+            }
+        });
+    }
+
+    private void forward(String name, boolean interactive, Client ctx, PeerClient owner) {
+        metrics.forwarded.increment();
+        owner.forward(name, interactive, ctx.caller).whenComplete((body, ex) -> {
+            if (ex != null) {
+                long retryMs = admission.connectionRetryMs();
+                forwardLog.log(logger, Level.WARNING,
+                        () -> "Forwarding '" + name + "' to " + owner.address + " failed, answering busy: " + ex.getMessage());
+                ctx.send(name, Protocol.busy(retryMs));
+            } else {
+                ctx.send(name, body);
             }
         });
     }
 
-    private void genLoop() {
+    private void startGeneration(GenTask task, GenTask.Lane lane, String caller) {
+        metrics.storeMisses.increment();
+        try {
+            keyLog.markPending(task.name);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to record pending generation for " + task.name + ": " + e.getMessage(), e);
+        }
+        generators.get(task.algorithm).scheduler.submit(task, lane, caller);
+        logger.fine(() -> "Enqueued " + lane + " " + task.algorithm + " generation for '" + task.subject() + "'");
+    }
+
+    /**
+     * Runs on a loader thread: completes {@code task} from the key log, or generates the key if it can't be read,
+     * in the background if nobody waits for it any more.
+     */
+    private void loadStored(GenTask task, GenTask.Lane lane, String caller) {
+        try {
+            KeyLog.StoredKey stored = keyLog.lookup(task.name);
+            if (stored != null) {
+                KeyEntry entry = entryFromDer(task.algorithm, stored.keyDer(), stored.certDer());
+                metrics.storeLoads.increment();
+                logger.fine(() -> "Loaded stored keys for '" + task.name + "'");
+                cache.put(task.name, entry);
+                inFlight.remove(task.name, task);
+                task.future.complete(entry);
+                return;
+            }
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "Failed to load stored keys for " + task.name + ": " + e.getMessage(), e);
+        }
+        startGeneration(task, task.waiters.get() > 0 ? lane : GenTask.Lane.BACKGROUND, caller);
+    }
+
+    private static KeyEntry entryFromDer(KeyAlgorithm algorithm, byte[] keyDer, byte[] certDer)
+            throws GeneralSecurityException {
+        PrivateKey privateKey = KeyFactory.getInstance(algorithm.family).generatePrivate(new PKCS8EncodedKeySpec(keyDer));
+        X509Certificate cert = (X509Certificate) CertificateFactory.getInstance("X.509")
+                .generateCertificate(new ByteArrayInputStream(certDer));
+        return new KeyEntry(PemUtils.privateKeyToPem(privateKey), PemUtils.certToPem(cert));
+    }
+
+    /**
+     * Takes up to {@code issueBatch} of {@code generator}'s tasks at a time (for RSA, no more than its pool can serve
+     * without inline generation), gets a key pair for each, then signs and persists the whole batch together. An RSA
+     * batch makes at most one inline generation: if the pool runs dry after the batch was sized, the pairs taken so
+     * far are issued at once and the remaining tasks go back on the queue.
+     */
+    private void genLoop(Generator generator) {
+        GenScheduler scheduler = generator.scheduler;
         while (true) {
             try {
-                GenTask task = genQueue.take();
-                String name = task.name;
-                CompletableFuture<KeyEntry> future = task.future;
-                if (future.isDone()) continue;
-                logger.info(Thread.currentThread().getName() + " generating keys for " + name);
-                KeyPairGenerator kpg = KeyPairGenerator.getInstance("RSA");
-                kpg.initialize(8192);
-                KeyPair kp = kpg.generateKeyPair();
-
-                X500Name subject = new X500Name("CN=" + name);
-                BigInteger serial = new BigInteger(64, new SecureRandom());
-                Date notBefore = Date.from(Instant.now().minusSeconds(60));
-                Date notAfter = Date.from(Instant.now().plusSeconds(60L * 60 * 24 * 365 * 20)); // 20 years
-                JcaX509v3CertificateBuilder certBuilder = new JcaX509v3CertificateBuilder(
-                        issuerName, serial, notBefore, notAfter, subject, kp.getPublic()
-                );
-                ContentSigner signer = new JcaContentSignerBuilder("SHA256withRSA").setProvider("BC").build(issuerPrivateKey);
-                X509CertificateHolder holder = certBuilder.build(signer);
-                X509Certificate cert = new JcaX509CertificateConverter().setProvider("BC").getCertificate(holder);
-
-                String pemKey = PemUtils.privateKeyToPem(kp.getPrivate());
-                String pemCert = PemUtils.certToPem(cert);
-
-                KeyEntry entry = new KeyEntry(pemKey, pemCert, kp, cert);
-                future.complete(entry);
-                logger.info("Generated keys for " + name);
+                int max = generator.algorithm.isRsa() ? Math.min(issueBatch, 1 + generator.pool.depth()) : issueBatch;
+                List<GenTask> batch = scheduler.takeBatch(max);
+                List<GenTask> tasks = new ArrayList<>(batch.size());
+                List<KeyPair> keyPairs = new ArrayList<>(batch.size());
+                int generated = 0;
+                long genStart = System.nanoTime();
+                for (int i = 0; i < batch.size(); ++i) {
+                    GenTask task = batch.get(i);
+                    if (task.future.isDone()) {
+                        scheduler.done(task);
+                        continue;
+                    }
+                    KeyPair kp = generator.pool.take();
+                    if (kp != null) {
+                        logger.fine(() -> Thread.currentThread().getName() + " took pooled keys for " + task.subject());
+                    } else if (generator.algorithm.isRsa()) {
+                        // Nothing the pool could serve waits behind an inline RSA generation.
+                        putBack(scheduler, batch.subList(tasks.isEmpty() ? i + 1 : i, batch.size()));
+                        if (tasks.isEmpty() && (kp = generate(generator, task)) != null) {
+                            ++generated;
+                            tasks.add(task);
+                            keyPairs.add(kp);
+                        }
+                        break;
+                    } else {
+                        kp = generate(generator, task);
+                        if (kp == null) continue;
+                        ++generated;
+                    }
+                    tasks.add(task);
+                    keyPairs.add(kp);
+                }
+                if (tasks.isEmpty()) continue;
+                long signStart = System.nanoTime();
+                issue(generator, tasks, keyPairs, generated, genStart, signStart);
             } catch (InterruptedException ie) {
                 Thread.currentThread().interrupt();
                 break;
@@ -228,124 +627,571 @@ public class KeyServer {
         }
     }
 
+    private static void putBack(GenScheduler scheduler, List<GenTask> tasks) {
+        for (GenTask task : tasks) {
+            if (task.future.isDone()) {
+                scheduler.done(task);
+            } else {
+                scheduler.requeue(task);
+            }
+        }
+    }
+
+    /**
+     * A key pair generated here for {@code task} because the pool had none; {@code null} if the task was abandoned
+     * meanwhile and has been put back on the queue.
+     */
+    private KeyPair generate(Generator generator, GenTask task) throws GeneralSecurityException {
+        generator.generating.incrementAndGet();
+        try {
+            logger.fine(() -> Thread.currentThread().getName() + " generating keys for " + task.subject() + " (pool empty)");
+            long start = System.nanoTime();
+            KeyPair kp = generator.algorithm.generate(primePool, task::isCancelled);
+            metrics.keyGenMicros.record((System.nanoTime() - start) / 1000);
+            return kp;
+        } catch (CancellationException ce) {
+            generator.scheduler.requeue(task);
+            logger.info("Deferred abandoned generation for " + task.subject());
+            return null;
+        } finally {
+            generator.generating.decrementAndGet();
+        }
+    }
+
+    /**
+     * Signs and persists a batch; {@code generated} of its pairs were generated inline rather than taken from the
+     * pool, and only those feed the admission estimate, since pool hits cost next to nothing.
+     */
+    private void issue(Generator generator, List<GenTask> tasks, List<KeyPair> keyPairs, int generated,
+                       long genStart, long signStart) {
+        GenScheduler scheduler = generator.scheduler;
+        int n = tasks.size();
+        List<String> names = new ArrayList<>(n);
+        List<String> subjects = new ArrayList<>(n);
+        List<PublicKey> publicKeys = new ArrayList<>(n);
+        for (int i = 0; i < n; ++i) {
+            names.add(tasks.get(i).name);
+            subjects.add(tasks.get(i).subject());
+            publicKeys.add(keyPairs.get(i).getPublic());
+        }
+        List<byte[]> keyDers = new ArrayList<>(n);
+        List<byte[]> certDers = new ArrayList<>(n);
+        List<KeyEntry> entries = new ArrayList<>(n);
+        try {
+            List<X509Certificate> certs = certIssuer().issueAll(subjects, publicKeys);
+            long signMicros = (System.nanoTime() - signStart) / 1000 / n;
+            if (generated > 0) {
+                long genMs = ((signStart - genStart) / 1000 / generated + signMicros) / 1000;
+                for (int i = 0; i < generated; ++i) admission.recordGeneration(generator.algorithm, genMs);
+            }
+            for (int i = 0; i < n; ++i) {
+                GenTask task = tasks.get(i);
+                PrivateKey privateKey = keyPairs.get(i).getPrivate();
+                X509Certificate cert = certs.get(i);
+                KeyEntry entry = new KeyEntry(PemUtils.privateKeyToPem(privateKey), PemUtils.certToPem(cert));
+                keyDers.add(privateKey.getEncoded());
+                certDers.add(cert.getEncoded());
+                entries.add(entry);
+                metrics.signMicros.record(signMicros);
+                metrics.generations.increment();
+                task.future.complete(entry);
+                scheduler.done(task);
+                logger.info(() -> "Generated " + generator.algorithm + " keys for " + task.subject());
+            }
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Failed to issue " + generator.algorithm + " certificates for " + subjects + ": "
+                    + e.getMessage(), e);
+            for (GenTask task : tasks.subList(keyDers.size(), n)) {
+                task.future.completeExceptionally(e);
+                scheduler.done(task);
+                inFlight.remove(task.name, task);
+            }
+            names = names.subList(0, keyDers.size());
+            if (names.isEmpty()) return;
+        }
+        try {
+            keyLog.appendAll(names, keyDers, certDers);
+        } catch (IOException e) {
+            // Holding them in the in-flight map until the disk recovers would grow the heap without bound, so they
+            // go to the bounded cache only; once evicted, the names are generated again.
+            logger.log(Level.WARNING, "Failed to persist keys for " + names
+                    + ", serving them from the memory cache only: " + e.getMessage(), e);
+        }
+        // Only now that the disk tier has them, or failed to take them, may the names leave the in-flight map.
+        for (int i = 0; i < names.size(); ++i) {
+            cache.put(names.get(i), entries.get(i));
+            inFlight.remove(names.get(i), tasks.get(i));
+        }
+    }
+
     public void shutdown() throws IOException {
         running = false;
         selector.wakeup();
         serverChannel.close();
-        writer.shutdown();
+        for (Reactor reactor : reactors) reactor.shutdown();
+        if (blocking != null) blocking.shutdown();
+        Cluster cluster = this.cluster;
+        if (cluster != null) cluster.shutdown();
+        for (Generator generator : generators.values()) generator.pool.shutdown();
+        if (primePool != null) primePool.shutdownNow();
+        loader.shutdownNow();
+        keyLog.close();
     }
 
-    private static class ClientContext {
-        final SocketChannel channel;
-        final ByteBuffer readBuffer = ByteBuffer.allocate(1024);
-        final java.util.ArrayList<Byte> nameBytes = new java.util.ArrayList<>();
+    /**
+     * How connections are served: by the selector-based {@link Reactor}s, or by a virtual thread per connection
+     * doing blocking reads and writes ({@link BlockingEngine}). Both share everything behind the request path.
+     */
+    enum Engine {
+        NIO, VIRTUAL;
 
-        ClientContext(SocketChannel c) {
-            this.channel = c;
+        @Override
+        public String toString() {
+            return name().toLowerCase();
         }
     }
 
-    private static class KeyEntry {
-        final String privatePem;
-        final String certPem;
-        final KeyPair keyPair;
-        final X509Certificate cert;
+    /**
+     * Queue, key pool and generator threads for one algorithm, so cheap requests never wait behind RSA-8192 ones.
+     */
+    private static final class Generator {
+        final KeyAlgorithm algorithm;
+        final GenScheduler scheduler = new GenScheduler();
+        final KeyPool pool;
+        final AtomicInteger generating = new AtomicInteger();
 
-        KeyEntry(String privatePem, String certPem, KeyPair kp, X509Certificate cert) {
-            this.privatePem = privatePem;
-            this.certPem = certPem;
-            this.keyPair = kp;
-            this.cert = cert;
+        Generator(KeyAlgorithm algorithm, KeyPool pool) {
+            this.algorithm = algorithm;
+            this.pool = pool;
         }
     }
 
-    private record GenTask(String name, CompletableFuture<KeyEntry> future) {
+    /**
+     * What the request path needs from a connection, whichever engine serves it. {@link #waitingOn} holds one entry
+     * per request still waiting on a generation, dropped when it completes; {@link #send} and {@link #close} may be
+     * called from any thread.
+     */
+    private abstract static class Client {
+        final String caller;
+        final ConcurrentLinkedQueue<GenTask> waitingOn = new ConcurrentLinkedQueue<>();
+        boolean pipelined;
+        boolean forwarded;
+
+        Client(SocketChannel c) throws IOException {
+            this.caller = ((InetSocketAddress) c.getRemoteAddress()).getAddress().getHostAddress();
+        }
+
+        /**
+         * Queues the response to one name; {@code name} is echoed in the tag on pipelined connections.
+         */
+        abstract void send(String name, ByteBuffer body);
+
+        abstract void close();
+    }
+
+    private static class ClientContext extends Client {
+        final SocketChannel channel;
+        final Reactor reactor;
+        final ArrayDeque<ByteBuffer> out = new ArrayDeque<>();
+        ByteBuffer readBuffer = ByteBuffer.allocate(1024);
+        boolean modeKnown;
+        boolean nameSeen;
+        boolean inputClosed;
+        int outstanding;
+        final long acceptedNanos;
+        long firstByteNanos;
+        long awaitingSince;
+        long lastWriteNanos;
+        long wheelDue = Long.MAX_VALUE;
+
+        ClientContext(SocketChannel c, Reactor reactor, long acceptedNanos) throws IOException {
+            super(c);
+            this.channel = c;
+            this.reactor = reactor;
+            this.acceptedNanos = acceptedNanos;
+            this.awaitingSince = acceptedNanos;
+        }
+
+        @Override
+        void send(String name, ByteBuffer body) {
+            reactor.send(this, name, body);
+        }
+
+        @Override
+        void close() {
+            reactor.close(this);
+        }
     }
 
-    private static class Writer implements Runnable {
+    private class Reactor implements Runnable {
         private final Selector sel;
-        private final ConcurrentLinkedQueue<Pending> pending = new ConcurrentLinkedQueue<>();
+        private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger connections = new AtomicInteger();
+        private final AtomicLong backlog = new AtomicLong();
+        private final TimingWheel<ClientContext> deadlines = new TimingWheel<>(WHEEL_TICK_MS, WHEEL_SLOTS, System.nanoTime());
+        private final String name;
         private volatile boolean running = true;
 
-        Writer() throws IOException {
+        Reactor(String name) throws IOException {
+            this.name = name;
             this.sel = Selector.open();
         }
 
-        public void enqueue(SocketChannel sc, ByteBuffer data) {
-            pending.offer(new Pending(sc, data));
-            sel.wakeup();
+        int load() {
+            return connections.get();
+        }
+
+        void register(SocketChannel sc, long acceptedNanos) {
+            connections.incrementAndGet();
+            execute(() -> {
+                try {
+                    ClientContext ctx = new ClientContext(sc, this, acceptedNanos);
+                    sc.register(sel, SelectionKey.OP_READ, ctx);
+                    rearm(ctx);
+                } catch (IOException ioe) {
+                    connections.decrementAndGet();
+                    try {
+                        sc.close();
+                    } catch (IOException ignore) {}
+                }
+            });
+        }
+
+        void send(ClientContext ctx, String name, ByteBuffer body) {
+            execute(() -> {
+                SelectionKey key = ctx.channel.keyFor(sel);
+                if (key == null || !key.isValid()) return;
+                ctx.outstanding--;
+                ByteBuffer response = admitResponse(name, body);
+                if (ctx.out.isEmpty()) ctx.lastWriteNanos = System.nanoTime();
+                if (ctx.pipelined) {
+                    ByteBuffer tag = Protocol.nameTag(name);
+                    backlog.addAndGet(tag.remaining());
+                    ctx.out.add(tag);
+                }
+                backlog.addAndGet(response.remaining());
+                ctx.out.add(response);
+                key.interestOps(SelectionKey.OP_WRITE | (ctx.inputClosed ? 0 : SelectionKey.OP_READ));
+                rearm(ctx);
+            });
+        }
+
+        void close(ClientContext ctx) {
+            execute(() -> {
+                SelectionKey key = ctx.channel.keyFor(sel);
+                if (key != null) closeKeyChannel(key);
+            });
+        }
+
+        /**
+         * Puts {@code ctx} on the wheel again if its deadline moved earlier than the slot it is waiting in.
+         */
+        private void rearm(ClientContext ctx) {
+            long due = deadline(ctx);
+            if (due != 0 && due < ctx.wheelDue) ctx.wheelDue = deadlines.schedule(ctx, due);
+        }
+
+        private void checkDeadline(ClientContext ctx) {
+            SelectionKey key = ctx.channel.keyFor(sel);
+            long now = System.nanoTime();
+            if (key == null || !key.isValid() || ctx.wheelDue > now) return;
+            long due = deadline(ctx);
+            if (due == 0 || due > now) {
+                ctx.wheelDue = deadlines.schedule(ctx, due == 0 ? Long.MAX_VALUE : due);
+                return;
+            }
+            String kind = ctx.out.isEmpty() ? "silent" : "slow-reading";
+            reapLog.log(logger, Level.INFO, () -> "Reaping " + kind + " connection from " + ctx.caller);
+            metrics.reaped.increment();
+            closeKeyChannel(key);
         }
 
-        public void shutdown() throws IOException {
+        void shutdown() {
             running = false;
             sel.wakeup();
-            sel.close();
+        }
+
+        private void execute(Runnable task) {
+            tasks.offer(task);
+            sel.wakeup();
         }
 
         @Override
         public void run() {
             try {
                 while (running) {
-                    Pending p;
-                    while ((p = pending.poll()) != null) {
-                        try {
-                            SocketChannel sc = p.channel;
-                            sc.configureBlocking(false);
-                            SelectionKey key = sc.keyFor(sel);
-                            if (key == null) {
-                                sc.register(sel, SelectionKey.OP_WRITE, p.data);
-                            } else {
-                                key.attach(p.data);
-                                key.interestOps(SelectionKey.OP_WRITE);
-                            }
-                        } catch (IOException ioe) {
-                            try {
-                                p.channel.close();
-                            } catch (IOException ignore) {
-                            }
-                        }
-                    }
+                    Runnable task;
+                    while ((task = tasks.poll()) != null) task.run();
 
-                    sel.select();
+                    if (deadlines.size() > 0) {
+                        sel.select(deadlines.tickMs());
+                    } else {
+                        sel.select();
+                    }
                     var it = sel.selectedKeys().iterator();
                     while (it.hasNext()) {
                         var key = it.next();
                         it.remove();
-                        if (!key.isValid()) continue;
-                        if (key.isWritable()) {
-                            SocketChannel sc = (SocketChannel) key.channel();
-                            ByteBuffer buf = (ByteBuffer) key.attachment();
-                            try {
-                                sc.write(buf);
-                                if (!buf.hasRemaining()) {
-                                    key.cancel();
-                                    sc.close();
-                                }
-                            } catch (IOException ioe) {
-                                try {
-                                    sc.close();
-                                } catch (IOException ignore) {
-                                }
-                                key.cancel();
-                            }
+                        try {
+                            if (!key.isValid()) continue;
+                            if (key.isReadable()) read(key);
+                            if (key.isValid() && key.isWritable()) write(key);
+                            if (key.isValid()) rearm((ClientContext) key.attachment());
+                        } catch (IOException ex) {
+                            logger.log(Level.WARNING, "IO error on key: " + ex.getMessage(), ex);
+                            closeKeyChannel(key);
+                        } catch (Exception ex) {
+                            logger.log(Level.SEVERE, "Error handling key: " + ex.getMessage(), ex);
+                            closeKeyChannel(key);
                         }
                     }
+                    deadlines.advance(System.nanoTime(), this::checkDeadline);
                 }
             } catch (IOException _) {
             } finally {
+                for (SelectionKey key : sel.keys()) closeKeyChannel(key);
                 try {
                     sel.close();
                 } catch (IOException ignore) {}
             }
         }
+    }
+
+    /**
+     * {@link Engine#VIRTUAL}: accepts on the thread calling {@link #run()} and gives every connection a virtual thread
+     * that reads its names with blocking reads, plus a writer thread of its own if it is pipelined. A reaper applies
+     * the reactors' read and idle timeouts by closing the channel, which unblocks both threads.
+     */
+    private final class BlockingEngine {
+        private final Set<BlockingClient> live = ConcurrentHashMap.newKeySet();
+        private final AtomicLong backlog = new AtomicLong();
+        private final ThreadFactory threads = Thread.ofVirtual().name("Conn-", 0).factory();
+        private final Thread reaper = new Thread(this::reapLoop, "Reaper");
+
+        void acceptLoop() {
+            reaper.setDaemon(true);
+            reaper.start();
+            while (running && serverChannel.isOpen()) {
+                SocketChannel sc;
+                try {
+                    sc = serverChannel.accept();
+                } catch (IOException ex) {
+                    if (running) logger.log(Level.WARNING, "Accept failed: " + ex.getMessage(), ex);
+                    continue;
+                }
+                long acceptedNanos = System.nanoTime();
+                try {
+                    sc.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                    if (!admission.acceptConnection(live.size())) {
+                        rejectConnection(sc);
+                        continue;
+                    }
+                    BlockingClient client = new BlockingClient(sc, acceptedNanos);
+                    live.add(client);
+                    metrics.accepted.increment();
+                    threads.newThread(client::serve).start();
+                    if (logger.isLoggable(Level.FINE)) logger.fine("Accepted connection from " + sc.getRemoteAddress());
+                } catch (IOException ex) {
+                    logger.log(Level.WARNING, "Accept failed: " + ex.getMessage(), ex);
+                    try {
+                        sc.close();
+                    } catch (IOException ignore) {}
+                }
+            }
+        }
+
+        private void reapLoop() {
+            while (running) {
+                try {
+                    Thread.sleep(WHEEL_TICK_MS);
+                } catch (InterruptedException ie) {
+                    return;
+                }
+                long now = System.nanoTime();
+                for (BlockingClient client : live) {
+                    long due = client.deadline();
+                    if (client.closed || due == 0 || due > now) continue;
+                    String kind = client.unsent.get() == 0 ? "silent" : "slow-reading";
+                    reapLog.log(logger, Level.INFO, () -> "Reaping " + kind + " connection from " + client.caller);
+                    metrics.reaped.increment();
+                    client.close();
+                }
+            }
+        }
+
+        void shutdown() {
+            reaper.interrupt();
+            for (BlockingClient client : live) client.close();
+        }
+
+        private final class BlockingClient extends Client {
+            /**
+             * Queued to wake the writer when there may be nothing more to write.
+             */
+            private static final ByteBuffer[] WAKE = new ByteBuffer[0];
 
-        private static class Pending {
             final SocketChannel channel;
-            final ByteBuffer data;
+            final long acceptedNanos;
+            final LinkedBlockingQueue<ByteBuffer[]> out = new LinkedBlockingQueue<>();
+            final AtomicLong unsent = new AtomicLong();
+            final AtomicInteger outstanding = new AtomicInteger();
+            volatile boolean inputClosed;
+            volatile boolean closed;
+            volatile long awaitingSince;
+            volatile long lastWriteNanos;
+            private long firstByteNanos;
 
-            Pending(SocketChannel c, ByteBuffer b) {
+            BlockingClient(SocketChannel c, long acceptedNanos) throws IOException {
+                super(c);
                 this.channel = c;
-                this.data = b;
+                this.acceptedNanos = acceptedNanos;
+                this.awaitingSince = acceptedNanos;
+            }
+
+            long deadline() {
+                return KeyServer.this.deadline(unsent.get() > 0, lastWriteNanos,
+                        outstanding.get() > 0 || inputClosed || forwarded, awaitingSince);
+            }
+
+            /**
+             * Reads names until the client stops sending (only one unless pipelined), then waits for the responses
+             * to be written, on this thread or the writer's.
+             */
+            void serve() {
+                Thread writer = null;
+                try {
+                    ByteBuffer buf = ByteBuffer.allocate(1024);
+                    boolean modeKnown = false;
+                    boolean nameSeen = false;
+                    while (!nameSeen || pipelined) {
+                        if (channel.read(buf) < 0) break;
+                        buf.flip();
+                        if (!modeKnown && buf.hasRemaining()) {
+                            modeKnown = true;
+                            byte mode = buf.get(buf.position());
+                            if (mode == Protocol.PIPELINE || mode == Protocol.FORWARD) {
+                                pipelined = true;
+                                forwarded = mode == Protocol.FORWARD;
+                                buf.get();
+                                writer = threads.newThread(this::writeLoop);
+                                writer.start();
+                            }
+                        }
+                        byte[] arr = buf.array();
+                        int start = buf.position();
+                        for (int i = start; i < buf.limit() && (!nameSeen || pipelined); ++i) {
+                            if (arr[i] != 0) continue;
+                            String name = new String(arr, start, i - start, StandardCharsets.US_ASCII);
+                            start = i + 1;
+                            nameSeen = true;
+                            outstanding.incrementAndGet();
+                            awaitingSince = System.nanoTime();
+                            handleNameForClient(name, this);
+                        }
+                        buf.position(start);
+                        buf.compact();
+                        if (!buf.hasRemaining()) {
+                            if (buf.capacity() > Protocol.MAX_NAME) {
+                                badRequestLog.log(logger, Level.WARNING, () -> "Name too long, closing connection");
+                                close();
+                                break;
+                            }
+                            ByteBuffer bigger = ByteBuffer.allocate(Math.min(buf.capacity() * 2, Protocol.MAX_NAME + 1));
+                            buf.flip();
+                            bigger.put(buf);
+                            buf = bigger;
+                        }
+                    }
+                } catch (IOException e) {
+                    if (!closed) logger.fine(() -> "Connection from " + caller + " failed: " + e.getMessage());
+                    close();
+                }
+                inputClosed = true;
+                try {
+                    if (writer == null) {
+                        if (outstanding.get() > 0 || !out.isEmpty()) writeLoop();
+                    } else {
+                        out.add(WAKE);
+                        writer.join();
+                    }
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    finish();
+                }
+            }
+
+            private void writeLoop() {
+                List<ByteBuffer[]> batch = new ArrayList<>();
+                try {
+                    while (!closed && !(inputClosed && outstanding.get() == 0 && out.isEmpty())) {
+                        batch.add(out.take());
+                        out.drainTo(batch);
+                        int count = 0;
+                        for (ByteBuffer[] buffers : batch) count += buffers.length;
+                        ByteBuffer[] all = new ByteBuffer[count];
+                        count = 0;
+                        for (ByteBuffer[] buffers : batch) {
+                            for (ByteBuffer b : buffers) all[count++] = b;
+                        }
+                        batch.clear();
+                        while (count > 0 && all[count - 1].hasRemaining()) {
+                            long written = channel.write(all);
+                            backlog.addAndGet(-written);
+                            unsent.addAndGet(-written);
+                            lastWriteNanos = System.nanoTime();
+                            if (firstByteNanos == 0) {
+                                firstByteNanos = lastWriteNanos;
+                                metrics.ttfbMicros.record((firstByteNanos - acceptedNanos) / 1000);
+                            }
+                        }
+                    }
+                    if (!closed) metrics.endToEndMicros.record((System.nanoTime() - acceptedNanos) / 1000);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                } catch (IOException e) {
+                    if (!closed) logger.fine(() -> "Writing to " + caller + " failed: " + e.getMessage());
+                    close();
+                }
+            }
+
+            @Override
+            void send(String name, ByteBuffer body) {
+                synchronized (this) {
+                    if (!closed) {
+                        ByteBuffer response = admitResponse(name, body);
+                        ByteBuffer[] buffers = pipelined
+                                ? new ByteBuffer[]{Protocol.nameTag(name), response}
+                                : new ByteBuffer[]{response};
+                        long bytes = 0;
+                        for (ByteBuffer b : buffers) bytes += b.remaining();
+                        if (unsent.getAndAdd(bytes) == 0) lastWriteNanos = System.nanoTime();
+                        backlog.addAndGet(bytes);
+                        out.add(buffers);
+                    }
+                }
+                // Only after queuing, so the writer never sees nothing outstanding and nothing queued in between.
+                outstanding.decrementAndGet();
+            }
+
+            @Override
+            void close() {
+                if (closed) return;
+                closed = true;
+                try {
+                    channel.close();
+                } catch (IOException ignore) {}
+                out.add(WAKE);
+            }
+
+            private void finish() {
+                close();
+                live.remove(this);
+                synchronized (this) {
+                    backlog.addAndGet(-unsent.getAndSet(0));
+                    out.clear();
+                }
+                release(this);
             }
         }
     }
@@ -364,6 +1210,14 @@ public class KeyServer {
         }
     }
 
+    /**
+     * Registers the BouncyCastle provider, which the PEM parser and certificate signer use, and loads the issuer key.
+     */
+    static PrivateKey loadIssuerKey(File pemFile) throws Exception {
+        Security.addProvider(new BouncyCastleProvider());
+        return loadPrivateKeyFromPem(pemFile);
+    }
+
     static PrivateKey loadPrivateKeyFromPem(File pemFile) throws Exception {
         try (Reader r = new FileReader(pemFile); PEMParser p = new PEMParser(r)) {
             Object obj = p.readObject();
@@ -397,14 +1251,38 @@ public class KeyServer {
             return;
         }
 
-        Security.addProvider(new BouncyCastleProvider());
-
         String mode = args[0];
         if ("server".equalsIgnoreCase(mode)) {
             int port = 9000;
             String issuerKeyPath = null;
             String issuerName = "CN=DefaultIssuer";
             int genThreads = Runtime.getRuntime().availableProcessors();
+            int poolSize = 16;
+            int poolLow = -1;
+            int poolHigh = -1;
+            int poolThreads = 1;
+            int poolReportSecs = 60;
+            String dataDir = "data";
+            int maxQueue = 1024;
+            long maxWaitMs = 0;
+            int maxConnections = 0;
+            int primeWorkers = Runtime.getRuntime().availableProcessors();
+            int statsPort = 0;
+            int issueBatch = 16;
+            long readTimeoutMs = 10_000;
+            long idleTimeoutMs = 60_000;
+            long maxOutboundBytes = 64L << 20;
+            long cacheBytes = 256L << 20;
+            int cacheEntries = 0;
+            String clusterNodes = null;
+            String node = null;
+            String algorithms = null;
+            int lightGenThreads = 2;
+            int lightPoolSize = 8;
+            int ioThreads = Math.min(4, Runtime.getRuntime().availableProcessors());
+            boolean syncLogging = false;
+            boolean lazyStart = false;
+            Engine engine = Engine.NIO;
             for (int i = 1; i < args.length; ++i) {
                 switch (args[i]) {
                     case "--port":
@@ -419,6 +1297,88 @@ public class KeyServer {
                     case "--gen-threads":
                         genThreads = Integer.parseInt(args[++i]);
                         break;
+                    case "--algorithms":
+                        algorithms = args[++i];
+                        break;
+                    case "--light-gen-threads":
+                        lightGenThreads = Integer.parseInt(args[++i]);
+                        break;
+                    case "--light-pool-size":
+                        lightPoolSize = Integer.parseInt(args[++i]);
+                        break;
+                    case "--io-threads":
+                        ioThreads = Integer.parseInt(args[++i]);
+                        if (ioThreads < 1) {
+                            System.err.println("io-threads must be at least 1");
+                            return;
+                        }
+                        break;
+                    case "--pool-size":
+                        poolSize = Integer.parseInt(args[++i]);
+                        break;
+                    case "--pool-low":
+                        poolLow = Integer.parseInt(args[++i]);
+                        break;
+                    case "--pool-high":
+                        poolHigh = Integer.parseInt(args[++i]);
+                        break;
+                    case "--pool-threads":
+                        poolThreads = Integer.parseInt(args[++i]);
+                        break;
+                    case "--pool-report-secs":
+                        poolReportSecs = Integer.parseInt(args[++i]);
+                        break;
+                    case "--data-dir":
+                        dataDir = args[++i];
+                        break;
+                    case "--stats-port":
+                        statsPort = Integer.parseInt(args[++i]);
+                        break;
+                    case "--prime-workers":
+                        primeWorkers = Integer.parseInt(args[++i]);
+                        break;
+                    case "--max-queue":
+                        maxQueue = Integer.parseInt(args[++i]);
+                        break;
+                    case "--max-wait-ms":
+                        maxWaitMs = Long.parseLong(args[++i]);
+                        break;
+                    case "--max-connections":
+                        maxConnections = Integer.parseInt(args[++i]);
+                        break;
+                    case "--issue-batch":
+                        issueBatch = Integer.parseInt(args[++i]);
+                        break;
+                    case "--read-timeout-ms":
+                        readTimeoutMs = Long.parseLong(args[++i]);
+                        break;
+                    case "--idle-timeout-ms":
+                        idleTimeoutMs = Long.parseLong(args[++i]);
+                        break;
+                    case "--cluster":
+                        clusterNodes = args[++i];
+                        break;
+                    case "--node":
+                        node = args[++i];
+                        break;
+                    case "--cache-bytes":
+                        cacheBytes = Long.parseLong(args[++i]);
+                        break;
+                    case "--cache-entries":
+                        cacheEntries = Integer.parseInt(args[++i]);
+                        break;
+                    case "--max-outbound-bytes":
+                        maxOutboundBytes = Long.parseLong(args[++i]);
+                        break;
+                    case "--sync-logging":
+                        syncLogging = true;
+                        break;
+                    case "--lazy-start":
+                        lazyStart = true;
+                        break;
+                    case "--engine":
+                        engine = Engine.valueOf(args[++i].toUpperCase());
+                        break;
                     default:
                         System.err.println("Unknown arg: " + args[i]);
                 }
@@ -428,16 +1388,45 @@ public class KeyServer {
                 printUsage();
                 return;
             }
-            PrivateKey issuerKey = loadPrivateKeyFromPem(new File(issuerKeyPath));
-            KeyServer server = new KeyServer(port, issuerKey, issuerName, genThreads);
+            AsyncLogHandler asyncLog = syncLogging ? null : AsyncLogHandler.install(8192);
+            File issuerKeyFile = new File(issuerKeyPath);
+            if (!issuerKeyFile.isFile()) {
+                System.err.println("issuer-key not found: " + issuerKeyPath);
+                return;
+            }
+            if (poolHigh < 0) poolHigh = poolSize;
+            if (poolLow < 0) poolLow = poolHigh / 2;
+            EnumMap<KeyAlgorithm, KeyPool> pools = new EnumMap<>(KeyAlgorithm.class);
+            pools.put(KeyAlgorithm.DEFAULT, new KeyPool(KeyAlgorithm.DEFAULT, poolSize, poolLow, poolHigh, poolThreads,
+                    poolReportSecs));
+            for (KeyAlgorithm algorithm : algorithms == null ? List.of(KeyAlgorithm.values()) : parseAlgorithms(algorithms)) {
+                if (pools.containsKey(algorithm)) continue;
+                // EC and Ed25519 pairs take well under a millisecond, so only the smaller RSA sizes get a pool.
+                int size = algorithm.isRsa() ? lightPoolSize : 0;
+                pools.put(algorithm, new KeyPool(algorithm, size, size / 2, size, 1, poolReportSecs));
+            }
+            KeyLog keyLog = new KeyLog(Path.of(dataDir));
+            KeyServer server = new KeyServer(port, () -> loadIssuerKey(issuerKeyFile), issuerName, ioThreads, primeWorkers, pools,
+                    new KeyCache(cacheBytes, cacheEntries), keyLog,
+                    new AdmissionControl(maxQueue, maxWaitMs, maxConnections, maxOutboundBytes, genThreads,
+                            lightGenThreads), issueBatch,
+                    readTimeoutMs, idleTimeoutMs, lazyStart, engine);
+            if (clusterNodes != null) {
+                server.joinCluster(new Cluster(node != null ? node : "localhost:" + port,
+                        List.of(clusterNodes.split(","))));
+            }
+            if (statsPort > 0) server.metrics().serve(statsPort);
             Runtime.getRuntime().addShutdownHook(new Thread(() -> {
                 try {
                     server.shutdown();
                 } catch (IOException e) {
                     logger.log(Level.SEVERE, "Error while handling client connection", e);
                 }
+                if (asyncLog != null) asyncLog.close();
             }));
             server.run();
+        } else if ("train".equalsIgnoreCase(mode)) {
+            StartupTraining.main(slice(args));
         } else if ("client".equalsIgnoreCase(mode)) {
             KeyClient.main(slice(args));
         } else {
@@ -445,10 +1434,33 @@ public class KeyServer {
         }
     }
 
+    private static List<KeyAlgorithm> parseAlgorithms(String ids) {
+        List<KeyAlgorithm> list = new ArrayList<>();
+        for (String id : ids.split(",")) {
+            KeyAlgorithm algorithm = KeyAlgorithm.parse(id.trim());
+            if (algorithm == null) throw new IllegalArgumentException("Unknown algorithm: " + id);
+            list.add(algorithm);
+        }
+        return list;
+    }
+
     private static void printUsage() {
         System.out.println("Usage:");
-        System.out.println("  java -jar ... server --port <port> --issuer-key <path> --issuer-name \"CN=...\" --gen-threads <n>");
-        System.out.println("  java -jar ... client --host <host> --port <port> --name <name> [--delay-secs N] [--exit-after-send]");
+        System.out.println("  java -jar ... server --port <port> --issuer-key <path> --issuer-name \"CN=...\" --gen-threads <n>"
+                + " [--io-threads N] [--prime-workers N] [--pool-size N] [--pool-low N] [--pool-high N] [--pool-threads N] [--pool-report-secs N]"
+                + " [--data-dir <path>] [--cache-bytes N] [--cache-entries N] [--max-queue N] [--max-wait-ms N] [--max-connections N]"
+                + " [--max-outbound-bytes N] [--read-timeout-ms N] [--idle-timeout-ms N] [--issue-batch N] [--stats-port N]"
+                + " [--cluster host:port,host:port,... [--node host:port]]"
+                + " [--algorithms id,id,...] [--light-gen-threads N] [--light-pool-size N] [--sync-logging] [--lazy-start] [--engine nio|virtual]");
+        System.out.println("  java -jar ... train --issuer-key <path> [--issuer-name \"CN=...\"]"
+                + "   (exercises startup and the request paths once, for -XX:ArchiveClassesAtExit)");
+        System.out.println("  java -jar ... client --host <host> --port <port> --name <name> [--name <name> ...] [--pipeline]"
+                + " [--algorithm <id>] [--delay-secs N] [--exit-after-send] [--max-retries N]");
+        System.out.println("  java -jar ... client --load --host <host> --port <port> [--connections N] [--requests N]"
+                + " [--new-ratio F] [--repeat-names N] [--slow-ratio F] [--delay-secs N] [--abort-ratio F] [--algorithm <id>]");
+        System.out.println("  java -jar ... client --bulk --host <host> --port <port> [--names-file <path>|-] [--out-dir <dir>]"
+                + " [--connections N] [--batch N] [--max-retries N] [--algorithm <id>]");
+        System.out.println("  algorithms: rsa-2048, rsa-3072, rsa-4096, rsa-8192 (default), ec-p256, ed25519");
     }
 
     private static String[] slice(String[] arr) {
@@ -0,0 +1,186 @@
+package com.example.rsakey;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Load-generator mode of {@link KeyClient}: one virtual thread per request, at most {@code --connections}
+ * open at once, mixing new names, repeats of a fixed name set, slow readers and clients that disconnect
+ * right after sending. Prints latency percentiles and throughput when done.
+ */
+final class LoadGenerator {
+    private final String host;
+    private final int port;
+    private final int connections;
+    private final int requests;
+    private final double newRatio;
+    private final int repeatNames;
+    private final double slowRatio;
+    private final int delaySecs;
+    private final double abortRatio;
+    private final KeyAlgorithm algorithm;
+    private final String runId = Long.toString(System.currentTimeMillis(), 36);
+
+    private final AtomicLong newCounter = new AtomicLong();
+    private final Histogram latencyMicros = new Histogram();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder busy = new LongAdder();
+    private final LongAdder aborted = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    private LoadGenerator(String host, int port, int connections, int requests, double newRatio, int repeatNames,
+                          double slowRatio, int delaySecs, double abortRatio, KeyAlgorithm algorithm) {
+        this.host = host;
+        this.port = port;
+        this.connections = connections;
+        this.requests = requests;
+        this.newRatio = newRatio;
+        this.repeatNames = repeatNames;
+        this.slowRatio = slowRatio;
+        this.delaySecs = delaySecs;
+        this.abortRatio = abortRatio;
+        this.algorithm = algorithm;
+    }
+
+    static void main(String[] args) throws Exception {
+        String host = "localhost";
+        int port = 9000;
+        int connections = 1000;
+        int requests = 10_000;
+        double newRatio = 0.1;
+        int repeatNames = 100;
+        double slowRatio = 0;
+        int delaySecs = 1;
+        double abortRatio = 0;
+        KeyAlgorithm algorithm = KeyAlgorithm.DEFAULT;
+
+        for (int i = 0; i < args.length; ++i) {
+            switch (args[i]) {
+                case "--load":
+                    break;
+                case "--host":
+                    host = args[++i];
+                    break;
+                case "--port":
+                    port = Integer.parseInt(args[++i]);
+                    break;
+                case "--connections":
+                    connections = Integer.parseInt(args[++i]);
+                    break;
+                case "--requests":
+                    requests = Integer.parseInt(args[++i]);
+                    break;
+                case "--new-ratio":
+                    newRatio = Double.parseDouble(args[++i]);
+                    break;
+                case "--repeat-names":
+                    repeatNames = Integer.parseInt(args[++i]);
+                    break;
+                case "--slow-ratio":
+                    slowRatio = Double.parseDouble(args[++i]);
+                    break;
+                case "--delay-secs":
+                    delaySecs = Integer.parseInt(args[++i]);
+                    break;
+                case "--abort-ratio":
+                    abortRatio = Double.parseDouble(args[++i]);
+                    break;
+                case "--algorithm":
+                    algorithm = KeyAlgorithm.parse(args[++i]);
+                    if (algorithm == null) {
+                        System.err.println("Unknown algorithm: " + args[i]);
+                        return;
+                    }
+                    break;
+                default:
+                    System.err.println("Unknown arg: " + args[i]);
+            }
+        }
+        new LoadGenerator(host, port, connections, requests, newRatio, Math.max(1, repeatNames),
+                slowRatio, delaySecs, abortRatio, algorithm).run();
+    }
+
+    private void run() throws InterruptedException {
+        Semaphore open = new Semaphore(connections);
+        long start = System.nanoTime();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < requests; ++i) {
+                open.acquire();
+                executor.submit(() -> {
+                    try {
+                        request();
+                    } finally {
+                        open.release();
+                    }
+                });
+            }
+        }
+        report(System.nanoTime() - start);
+    }
+
+    private void request() {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        String name = algorithm.key(rnd.nextDouble() < newRatio
+                ? "load-" + runId + "-" + newCounter.incrementAndGet()
+                : "load-repeat-" + rnd.nextInt(repeatNames));
+        boolean abort = rnd.nextDouble() < abortRatio;
+        boolean slow = !abort && rnd.nextDouble() < slowRatio;
+        long start = System.nanoTime();
+        try (Socket s = new Socket()) {
+            s.connect(new InetSocketAddress(host, port), 5000);
+            OutputStream out = s.getOutputStream();
+            out.write(name.getBytes(StandardCharsets.US_ASCII));
+            out.write(0);
+            out.flush();
+            if (abort) {
+                aborted.increment();
+                return;
+            }
+            if (slow) Thread.sleep(delaySecs * 1000L);
+            InputStream in = new BufferedInputStream(s.getInputStream());
+            int keyLen = Protocol.readInt(in, "keyPem length");
+            if (keyLen == Protocol.BUSY) {
+                busy.increment();
+                return;
+            }
+            if (keyLen < 0 || keyLen > Protocol.MAX_BLOCK) throw new IOException("Invalid keyLen " + keyLen);
+            in.skipNBytes(keyLen);
+            Protocol.readBlock(in, "certPem", Protocol.MAX_BLOCK);
+            latencyMicros.record((System.nanoTime() - start) / 1000);
+            completed.increment();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            failed.increment();
+        }
+    }
+
+    private void report(long elapsedNanos) {
+        double secs = elapsedNanos / 1e9;
+        System.out.printf("Requests: %d in %.2f s (%.1f req/s completed)%n", requests, secs, completed.sum() / secs);
+        System.out.printf("Completed: %d, busy: %d, aborted: %d, failed: %d%n",
+                completed.sum(), busy.sum(), aborted.sum(), failed.sum());
+        System.out.printf("Latency ms: mean=%.2f p50=%.2f p99=%.2f p999=%.2f%n",
+                latencyMicros.mean() / 1000, ms(0.5), ms(0.99), ms(0.999));
+    }
+
+    private double ms(double q) {
+        return latencyMicros.percentile(q) / 1000.0;
+    }
+
+    static boolean requested(String[] args) {
+        for (String arg : args) if ("--load".equals(arg)) return true;
+        return false;
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.rsakey;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Lets one log event through per interval and counts the rest, so an overload that rejects thousands of
+ * requests a second logs one line a second saying how many were skipped. The message is only built for
+ * events that are logged.
+ */
+final class LogLimiter {
+    private final long intervalNanos;
+    private final AtomicLong next;
+    private final LongAdder suppressed = new LongAdder();
+
+    LogLimiter(long interval, TimeUnit unit) {
+        this.intervalNanos = unit.toNanos(interval);
+        this.next = new AtomicLong(System.nanoTime());
+    }
+
+    void log(Logger logger, Level level, Supplier<String> message) {
+        if (!logger.isLoggable(level)) return;
+        long now = System.nanoTime();
+        long due = next.get();
+        if (now - due < 0 || !next.compareAndSet(due, now + intervalNanos)) {
+            suppressed.increment();
+            return;
+        }
+        long skipped = suppressed.sumThenReset();
+        logger.log(level, skipped == 0 ? message : () -> message.get() + " (" + skipped + " similar suppressed)");
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.rsakey;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Forwards names to one peer of the cluster over a single connection opened with {@link Protocol#FORWARD}.
+ * Responses carry their name tag, so they are matched back to the waiting futures in any order, and concurrent
+ * requests for the same name share one forward; an interactive request joining a bulk one forwards the name again,
+ * so the owner moves it up. A writer thread owns the connection and reconnects on demand; a reader thread per
+ * connection completes the futures. A broken connection fails everything waiting on it.
+ */
+final class PeerClient {
+    private static final Logger logger = Logger.getLogger("PeerClient");
+
+    final String address;
+    private final InetSocketAddress socketAddress;
+    private final LinkedBlockingQueue<String> outbox = new LinkedBlockingQueue<>();
+    private final HashMap<String, Pending> pending = new HashMap<>();
+    private final Thread writer;
+    private volatile Socket socket;
+    private volatile boolean running = true;
+
+    PeerClient(String address) {
+        int colon = address.lastIndexOf(':');
+        if (colon <= 0) throw new IllegalArgumentException("Peer address must be host:port: " + address);
+        this.address = address;
+        this.socketAddress = new InetSocketAddress(address.substring(0, colon),
+                Integer.parseInt(address.substring(colon + 1)));
+        this.writer = new Thread(this::writeLoop, "Peer-" + address);
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Completes with the owner's response body for {@code name}, which may be a busy frame. {@code interactive} and
+     * {@code caller} describe the client that asked, for the owner's scheduler.
+     */
+    CompletableFuture<ByteBuffer> forward(String name, boolean interactive, String caller) {
+        CompletableFuture<ByteBuffer> future = new CompletableFuture<>();
+        boolean send;
+        synchronized (pending) {
+            Pending p = pending.computeIfAbsent(name, _ -> new Pending());
+            send = p.waiters.isEmpty() || (interactive && !p.interactive);
+            p.interactive |= interactive;
+            p.waiters.add(future);
+        }
+        if (send) outbox.add(Protocol.forwarded(name, interactive, caller));
+        return future;
+    }
+
+    void shutdown() {
+        running = false;
+        writer.interrupt();
+        disconnect(socket);
+    }
+
+    private void writeLoop() {
+        OutputStream out = null;
+        while (running) {
+            Socket s = socket;
+            try {
+                String frame = outbox.take();
+                if (s == null || s.isClosed()) {
+                    s = connect();
+                    out = new BufferedOutputStream(s.getOutputStream());
+                    out.write(Protocol.FORWARD);
+                }
+                out.write(frame.getBytes(StandardCharsets.US_ASCII));
+                out.write(0);
+                if (outbox.isEmpty()) out.flush();
+            } catch (InterruptedException ie) {
+                break;
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Forwarding to " + address + " failed: " + e.getMessage(), e);
+                disconnect(s);
+                failAll(e);
+            }
+        }
+    }
+
+    private Socket connect() throws IOException {
+        Socket s = new Socket();
+        s.connect(socketAddress, 5000);
+        s.setTcpNoDelay(true);
+        socket = s;
+        Thread reader = new Thread(() -> readLoop(s), "Peer-" + address + "-Reader");
+        reader.setDaemon(true);
+        reader.start();
+        logger.info("Connected to peer " + address);
+        return s;
+    }
+
+    private void readLoop(Socket s) {
+        try (InputStream in = new BufferedInputStream(s.getInputStream())) {
+            while (true) {
+                int nameLen = Protocol.readInt(in, "name length");
+                if (nameLen == Protocol.BUSY) {
+                    ByteBuffer busy = Protocol.busy(Protocol.readInt(in, "retry delay"));
+                    logger.warning("Peer " + address + " refused the connection, answering busy");
+                    completeAll(busy);
+                    return;
+                }
+                if (nameLen < 0 || nameLen > Protocol.MAX_NAME) throw new IOException("Invalid name length " + nameLen);
+                byte[] nameBytes = in.readNBytes(nameLen);
+                if (nameBytes.length < nameLen) throw new EOFException("Unexpected EOF reading name");
+                complete(new String(nameBytes, StandardCharsets.US_ASCII), readBody(in));
+            }
+        } catch (IOException e) {
+            if (running && !s.isClosed()) logger.log(Level.WARNING, "Peer " + address + " connection lost: " + e.getMessage(), e);
+            failAll(e);
+        } finally {
+            disconnect(s);
+        }
+    }
+
+    private static ByteBuffer readBody(InputStream in) throws IOException {
+        int keyLen = Protocol.readInt(in, "keyPem length");
+        if (keyLen == Protocol.BUSY) return Protocol.busy(Protocol.readInt(in, "retry delay"));
+        if (keyLen < 0 || keyLen > Protocol.MAX_BLOCK) throw new IOException("Invalid keyLen " + keyLen);
+        byte[] keyPem = in.readNBytes(keyLen);
+        if (keyPem.length < keyLen) throw new EOFException("Unexpected EOF reading keyPem");
+        byte[] certPem = Protocol.readBlock(in, "certPem", Protocol.MAX_BLOCK);
+        ByteBuffer body = ByteBuffer.allocate(4 + keyLen + 4 + certPem.length);
+        body.putInt(keyLen).put(keyPem).putInt(certPem.length).put(certPem);
+        body.flip();
+        return body.asReadOnlyBuffer();
+    }
+
+    // A name forwarded twice gets two responses; the second finds nobody waiting.
+    private void complete(String name, ByteBuffer body) {
+        Pending p;
+        synchronized (pending) {
+            p = pending.remove(name);
+        }
+        if (p == null) return;
+        for (CompletableFuture<ByteBuffer> waiter : p.waiters) waiter.complete(body.duplicate());
+    }
+
+    private void completeAll(ByteBuffer body) {
+        for (List<CompletableFuture<ByteBuffer>> waiters : drain()) {
+            for (CompletableFuture<ByteBuffer> waiter : waiters) waiter.complete(body.duplicate());
+        }
+    }
+
+    private void failAll(Throwable cause) {
+        for (List<CompletableFuture<ByteBuffer>> waiters : drain()) {
+            for (CompletableFuture<ByteBuffer> waiter : waiters) waiter.completeExceptionally(cause);
+        }
+    }
+
+    private List<List<CompletableFuture<ByteBuffer>>> drain() {
+        synchronized (pending) {
+            List<List<CompletableFuture<ByteBuffer>>> all = new ArrayList<>(pending.size());
+            for (Pending p : pending.values()) all.add(p.waiters);
+            pending.clear();
+            return all;
+        }
+    }
+
+    private void disconnect(Socket s) {
+        if (s == null) return;
+        try {
+            s.close();
+        } catch (IOException ignore) {}
+    }
+
+    private static final class Pending {
+        final List<CompletableFuture<ByteBuffer>> waiters = new ArrayList<>();
+        boolean interactive;
+    }
+}
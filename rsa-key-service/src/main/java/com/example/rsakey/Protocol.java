@@ -0,0 +1,75 @@
+package com.example.rsakey;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Wire format shared by {@link KeyServer} and {@link KeyClient}.
+ * <p>
+ * A request is an ASCII name terminated by NUL; the response body is {@code [keyLen][key PEM][certLen][cert PEM]}
+ * and the connection is closed after it. A name may be followed by {@link #ALGORITHM_SEPARATOR} and a
+ * {@link KeyAlgorithm} id to ask for something other than the default RSA-8192; the name tag of a pipelined
+ * response repeats the request exactly as sent, suffix included. A client that starts the connection with
+ * {@link #PIPELINE} may send any number of names back to back; each response is then prefixed with
+ * {@code [nameLen][name]} and may arrive out of order. The server closes a pipelined connection once the client has
+ * half-closed it and every response is written. A cluster node forwarding names to their owner starts with
+ * {@link #FORWARD} instead: the same pipelined exchange, but the receiver serves every name itself and keeps the
+ * connection open while it is idle. Each forwarded name is prefixed with the lane ({@link #INTERACTIVE} or
+ * {@link #BULK}) and address of the client that asked for it, ending with {@link #ORIGIN_SEPARATOR}, so the owner
+ * schedules it as if that client had asked directly.
+ * <p>
+ * When the server is overloaded a body is replaced by {@code [BUSY][retryAfterMs]}; a connection refused outright
+ * gets the same frame without a name tag, so a pipelined client sees {@link #BUSY} where it expects a name length.
+ */
+final class Protocol {
+    static final byte PIPELINE = 1;
+    static final byte FORWARD = 2;
+    static final char ALGORITHM_SEPARATOR = '\u001F';
+    static final char ORIGIN_SEPARATOR = '\u001E';
+    static final char INTERACTIVE = 'I';
+    static final char BULK = 'B';
+    static final int BUSY = -1;
+    static final int MAX_NAME = 1024 * 16;
+    static final int MAX_BLOCK = 50_000_000;
+
+    private Protocol() {
+    }
+
+    static ByteBuffer nameTag(String name) {
+        byte[] nameBytes = name.getBytes(StandardCharsets.US_ASCII);
+        ByteBuffer tag = ByteBuffer.allocate(4 + nameBytes.length);
+        tag.putInt(nameBytes.length);
+        tag.put(nameBytes);
+        tag.flip();
+        return tag;
+    }
+
+    static String forwarded(String name, boolean interactive, String caller) {
+        return (interactive ? INTERACTIVE : BULK) + caller + ORIGIN_SEPARATOR + name;
+    }
+
+    static ByteBuffer busy(long retryAfterMs) {
+        ByteBuffer frame = ByteBuffer.allocate(8);
+        frame.putInt(BUSY);
+        frame.putInt((int) retryAfterMs);
+        frame.flip();
+        return frame;
+    }
+
+    static int readInt(InputStream in, String what) throws IOException {
+        byte[] int4 = in.readNBytes(4);
+        if (int4.length < 4) throw new EOFException("Unexpected EOF reading " + what);
+        return ByteBuffer.wrap(int4).getInt();
+    }
+
+    static byte[] readBlock(InputStream in, String what, int max) throws IOException {
+        int len = readInt(in, what + " length");
+        if (len < 0 || len > max) throw new IOException("Invalid " + what + " length " + len);
+        byte[] data = in.readNBytes(len);
+        if (data.length < len) throw new EOFException("Unexpected EOF reading " + what);
+        return data;
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.rsakey;
+
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.SecureRandom;
+import java.security.spec.RSAPrivateCrtKeySpec;
+import java.security.spec.RSAPublicKeySpec;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+/**
+ * RSA key generation that can be abandoned part way. Primes are found by sieving a window of odd candidates
+ * against small primes and running probable-prime tests on the survivors, checking the cancel flag between tests.
+ * Given a {@link ForkJoinPool}, each prime is searched by several workers over independent random windows;
+ * the first one to find a prime stops the rest.
+ */
+final class RsaKeyGen {
+    static final BigInteger PUBLIC_EXPONENT = BigInteger.valueOf(65537);
+
+    private static final int CERTAINTY = 100;
+    private static final int WINDOW = 4096;
+    private static final int[] SMALL_PRIMES = smallPrimes(2000);
+
+    private static final SecureRandom random = new SecureRandom();
+
+    private RsaKeyGen() {
+    }
+
+    static KeyPair generate(int bits, BooleanSupplier cancelled) throws GeneralSecurityException {
+        return generate(bits, null, cancelled);
+    }
+
+    static KeyPair generate(int bits, ForkJoinPool pool, BooleanSupplier cancelled) throws GeneralSecurityException {
+        int pBits = (bits + 1) / 2;
+        int qBits = bits - pBits;
+        while (true) {
+            BigInteger p = pool == null ? findPrime(pBits, cancelled) : findPrime(pBits, pool, cancelled);
+            BigInteger q = pool == null ? findPrime(qBits, cancelled) : findPrime(qBits, pool, cancelled);
+            if (p.equals(q)) continue;
+            if (p.compareTo(q) < 0) {
+                BigInteger t = p;
+                p = q;
+                q = t;
+            }
+            BigInteger n = p.multiply(q);
+            if (n.bitLength() != bits) continue;
+            return toKeyPair(p, q);
+        }
+    }
+
+    static BigInteger findPrime(int bits, BooleanSupplier cancelled) {
+        while (true) {
+            BigInteger prime = searchWindow(randomBase(bits), cancelled);
+            if (prime != null && prime.bitLength() == bits) return prime;
+        }
+    }
+
+    static BigInteger findPrime(int bits, ForkJoinPool pool, BooleanSupplier cancelled) {
+        AtomicReference<BigInteger> found = new AtomicReference<>();
+        BooleanSupplier stop = () -> found.get() != null || cancelled.getAsBoolean();
+        List<ForkJoinTask<?>> workers = new ArrayList<>();
+        for (int i = 0; i < pool.getParallelism(); ++i) {
+            workers.add(pool.submit(() -> {
+                try {
+                    while (!stop.getAsBoolean()) {
+                        BigInteger prime = searchWindow(randomBase(bits), stop);
+                        if (prime != null && prime.bitLength() == bits) found.compareAndSet(null, prime);
+                    }
+                } catch (CancellationException ignore) {
+                }
+            }));
+        }
+        for (ForkJoinTask<?> worker : workers) worker.quietlyJoin();
+        BigInteger prime = found.get();
+        if (prime == null) throw new CancellationException("Key generation cancelled");
+        return prime;
+    }
+
+    /**
+     * Searches {@code base, base + 2, ...} over one window, returning the first probable prime
+     * {@code p} with {@code gcd(p - 1, e) == 1}, or {@code null} if the window has none.
+     */
+    static BigInteger searchWindow(BigInteger base, BooleanSupplier cancelled) {
+        BitSet composite = sieve(base);
+        for (int i = composite.nextClearBit(0); i < WINDOW; i = composite.nextClearBit(i + 1)) {
+            if (cancelled.getAsBoolean()) throw new CancellationException("Key generation cancelled");
+            BigInteger candidate = base.add(BigInteger.valueOf(2L * i));
+            if (candidate.mod(PUBLIC_EXPONENT).equals(BigInteger.ONE)) continue;
+            if (candidate.isProbablePrime(CERTAINTY)) return candidate;
+        }
+        return null;
+    }
+
+    /**
+     * A random odd number of {@code bits} bits with the two top bits set, so two of them multiply to full length.
+     */
+    static BigInteger randomBase(int bits) {
+        return new BigInteger(bits, random).setBit(bits - 1).setBit(bits - 2).setBit(0);
+    }
+
+    static KeyPair toKeyPair(BigInteger p, BigInteger q) throws GeneralSecurityException {
+        BigInteger n = p.multiply(q);
+        BigInteger p1 = p.subtract(BigInteger.ONE);
+        BigInteger q1 = q.subtract(BigInteger.ONE);
+        BigInteger lambda = p1.divide(p1.gcd(q1)).multiply(q1);
+        BigInteger d = PUBLIC_EXPONENT.modInverse(lambda);
+        KeyFactory kf = KeyFactory.getInstance("RSA");
+        return new KeyPair(
+                kf.generatePublic(new RSAPublicKeySpec(n, PUBLIC_EXPONENT)),
+                kf.generatePrivate(new RSAPrivateCrtKeySpec(n, PUBLIC_EXPONENT, d, p, q,
+                        d.mod(p1), d.mod(q1), q.modInverse(p))));
+    }
+
+    private static BitSet sieve(BigInteger base) {
+        BitSet composite = new BitSet(WINDOW);
+        for (int sp : SMALL_PRIMES) {
+            int r = base.mod(BigInteger.valueOf(sp)).intValue();
+            // first i with base + 2i == 0 (mod sp): 2i == -r, i == (sp - r) * inv(2) mod sp
+            int start = (int) ((long) (sp - r) % sp * ((sp + 1) / 2) % sp);
+            for (int i = start; i < WINDOW; i += sp) composite.set(i);
+        }
+        return composite;
+    }
+
+    private static int[] smallPrimes(int limit) {
+        BitSet notPrime = new BitSet(limit);
+        int count = 0;
+        int[] primes = new int[limit];
+        for (int i = 3; i < limit; i += 2) {
+            if (notPrime.get(i)) continue;
+            primes[count++] = i;
+            for (int j = i * i; j < limit; j += 2 * i) notPrime.set(j);
+        }
+        return java.util.Arrays.copyOf(primes, count);
+    }
+}
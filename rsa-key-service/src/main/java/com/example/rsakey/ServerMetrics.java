@@ -0,0 +1,254 @@
+package com.example.rsakey;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Counters, gauges and latency histograms for {@link KeyServer}, exported over JMX and as plain text on a
+ * loopback-only stats port. Histograms are recorded in microseconds; key generation times cover only pairs
+ * generated on request, not pool hits. Cache counters are for the memory tier ({@link KeyCache}), store counters
+ * for the disk tier ({@link KeyLog}); a request that joins a load or generation already in flight is a cache miss
+ * but not a store lookup. Queue and pool gauges are totals here and broken down per algorithm by
+ * {@link AlgorithmMetrics}.
+ */
+final class ServerMetrics implements ServerMetricsMXBean {
+    private static final Logger logger = Logger.getLogger("ServerMetrics");
+
+    final LongAdder accepted = new LongAdder();
+    final LongAdder requests = new LongAdder();
+    final LongAdder cacheHits = new LongAdder();
+    final LongAdder cacheMisses = new LongAdder();
+    final LongAdder storeLoads = new LongAdder();
+    final LongAdder storeMisses = new LongAdder();
+    final LongAdder generations = new LongAdder();
+    final LongAdder rejected = new LongAdder();
+    final LongAdder reaped = new LongAdder();
+    final LongAdder forwarded = new LongAdder();
+
+    final Histogram keyGenMicros = new Histogram();
+    final Histogram signMicros = new Histogram();
+    final Histogram ttfbMicros = new Histogram();
+    final Histogram endToEndMicros = new Histogram();
+
+    private final IntSupplier queueDepth;
+    private final IntSupplier inFlight;
+    private final IntSupplier openConnections;
+    private final LongSupplier backlogBytes;
+    private final List<AlgorithmMetrics> algorithms;
+    private final KeyCache cache;
+
+    ServerMetrics(IntSupplier queueDepth, IntSupplier inFlight, IntSupplier openConnections,
+                  LongSupplier backlogBytes, List<AlgorithmMetrics> algorithms, KeyCache cache) {
+        this.queueDepth = queueDepth;
+        this.inFlight = inFlight;
+        this.openConnections = openConnections;
+        this.backlogBytes = backlogBytes;
+        this.algorithms = List.copyOf(algorithms);
+        this.cache = cache;
+    }
+
+    void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            server.registerMBean(this, new ObjectName("com.example.rsakey:type=KeyServer"));
+            for (AlgorithmMetrics a : algorithms) {
+                server.registerMBean(a, new ObjectName("com.example.rsakey:type=KeyServer,algorithm=" + a.algorithm.id));
+            }
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "Failed to register metrics MBean: " + e.getMessage(), e);
+        }
+    }
+
+    void serve(int port) throws IOException {
+        ServerSocket ss = new ServerSocket();
+        ss.setReuseAddress(true);
+        ss.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        Thread t = new Thread(() -> {
+            while (!ss.isClosed()) {
+                try (Socket s = ss.accept(); OutputStream out = s.getOutputStream()) {
+                    out.write(getStats().getBytes(StandardCharsets.US_ASCII));
+                } catch (IOException e) {
+                    if (!ss.isClosed()) logger.log(Level.FINE, "Stats connection failed: " + e.getMessage(), e);
+                }
+            }
+        }, "Stats");
+        t.setDaemon(true);
+        t.start();
+        logger.info("Stats listening on " + ss.getLocalSocketAddress());
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return queueDepth.getAsInt();
+    }
+
+    @Override
+    public int getGenerationsInFlight() {
+        return inFlight.getAsInt();
+    }
+
+    @Override
+    public int getOpenConnections() {
+        return openConnections.getAsInt();
+    }
+
+    @Override
+    public long getAcceptedConnections() {
+        return accepted.sum();
+    }
+
+    @Override
+    public long getBacklogBytes() {
+        return backlogBytes.getAsLong();
+    }
+
+    @Override
+    public int getPoolDepth() {
+        int depth = 0;
+        for (AlgorithmMetrics a : algorithms) depth += a.getPoolDepth();
+        return depth;
+    }
+
+    @Override
+    public long getPoolEmptyHits() {
+        long hits = 0;
+        for (AlgorithmMetrics a : algorithms) hits += a.getPoolEmptyHits();
+        return hits;
+    }
+
+    @Override
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    @Override
+    public long getCacheHits() {
+        return cacheHits.sum();
+    }
+
+    @Override
+    public long getCacheMisses() {
+        return cacheMisses.sum();
+    }
+
+    @Override
+    public int getCacheEntries() {
+        return cache.size();
+    }
+
+    @Override
+    public long getCacheBytes() {
+        return cache.bytes();
+    }
+
+    @Override
+    public long getCacheEvictions() {
+        return cache.evictions();
+    }
+
+    @Override
+    public long getStoreLoads() {
+        return storeLoads.sum();
+    }
+
+    @Override
+    public long getStoreMisses() {
+        return storeMisses.sum();
+    }
+
+    @Override
+    public long getGenerations() {
+        return generations.sum();
+    }
+
+    @Override
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    @Override
+    public long getReaped() {
+        return reaped.sum();
+    }
+
+    @Override
+    public long getForwarded() {
+        return forwarded.sum();
+    }
+
+    @Override
+    public double getCacheHitRatio() {
+        return ratio(cacheHits.sum(), cacheMisses.sum());
+    }
+
+    @Override
+    public double getStoreHitRatio() {
+        return ratio(storeLoads.sum(), storeMisses.sum());
+    }
+
+    private static double ratio(long hits, long misses) {
+        return hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+    }
+
+    @Override
+    public double getKeyGenP99Ms() {
+        return keyGenMicros.percentile(0.99) / 1000.0;
+    }
+
+    @Override
+    public double getSignP99Ms() {
+        return signMicros.percentile(0.99) / 1000.0;
+    }
+
+    @Override
+    public double getTimeToFirstByteP99Ms() {
+        return ttfbMicros.percentile(0.99) / 1000.0;
+    }
+
+    @Override
+    public double getEndToEndP99Ms() {
+        return endToEndMicros.percentile(0.99) / 1000.0;
+    }
+
+    @Override
+    public String getStats() {
+        StringBuilder perAlgorithm = new StringBuilder();
+        for (AlgorithmMetrics a : algorithms) perAlgorithm.append(a.stats());
+        return "queue_depth " + getQueueDepth() + "\n"
+                + "generations_in_flight " + getGenerationsInFlight() + "\n"
+                + perAlgorithm
+                + "open_connections " + getOpenConnections() + "\n"
+                + "accepted_connections " + getAcceptedConnections() + "\n"
+                + "backlog_bytes " + getBacklogBytes() + "\n"
+                + "requests " + getRequests() + "\n"
+                + "cache " + cache.stats() + "\n"
+                + "cache_hits " + getCacheHits() + "\n"
+                + "cache_misses " + getCacheMisses() + "\n"
+                + "store_loads " + getStoreLoads() + "\n"
+                + "store_misses " + getStoreMisses() + "\n"
+                + "generations " + getGenerations() + "\n"
+                + "rejected " + getRejected() + "\n"
+                + "reaped " + getReaped() + "\n"
+                + "forwarded " + getForwarded() + "\n"
+                + String.format("cache_hit_ratio %.4f%n", getCacheHitRatio())
+                + String.format("store_hit_ratio %.4f%n", getStoreHitRatio())
+                + "keygen_us " + keyGenMicros.summary() + "\n"
+                + "sign_us " + signMicros.summary() + "\n"
+                + "ttfb_us " + ttfbMicros.summary() + "\n"
+                + "end_to_end_us " + endToEndMicros.summary() + "\n";
+    }
+}
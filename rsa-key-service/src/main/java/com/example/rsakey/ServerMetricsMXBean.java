@@ -0,0 +1,59 @@
+package com.example.rsakey;
+
+/**
+ * JMX view of {@link ServerMetrics}. Times are in milliseconds unless the name says otherwise. Queue and pool
+ * gauges are totals over all algorithms; {@link AlgorithmMetricsMXBean} has them per algorithm.
+ */
+public interface ServerMetricsMXBean {
+    int getQueueDepth();
+
+    int getGenerationsInFlight();
+
+    int getOpenConnections();
+
+    long getAcceptedConnections();
+
+    long getBacklogBytes();
+
+    int getPoolDepth();
+
+    long getPoolEmptyHits();
+
+    long getRequests();
+
+    long getCacheHits();
+
+    long getCacheMisses();
+
+    int getCacheEntries();
+
+    long getCacheBytes();
+
+    long getCacheEvictions();
+
+    long getStoreLoads();
+
+    long getStoreMisses();
+
+    long getGenerations();
+
+    long getRejected();
+
+    long getReaped();
+
+    long getForwarded();
+
+    double getCacheHitRatio();
+
+    double getStoreHitRatio();
+
+    double getKeyGenP99Ms();
+
+    double getSignP99Ms();
+
+    double getTimeToFirstByteP99Ms();
+
+    double getEndToEndP99Ms();
+
+    String getStats();
+}
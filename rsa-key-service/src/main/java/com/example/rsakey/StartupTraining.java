@@ -0,0 +1,102 @@
+package com.example.rsakey;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * The {@code train} mode: starts a server on a free port with a throwaway data directory, asks it for a few new
+ * names (generation, signing, persisting) and again for the same names (cache), then shuts it down. Run under
+ * {@code -XX:ArchiveClassesAtExit} it leaves an AppCDS archive holding every class a real start and its first
+ * requests load.
+ */
+final class StartupTraining {
+    private static final Logger logger = Logger.getLogger("StartupTraining");
+    private static final List<KeyAlgorithm> ALGORITHMS =
+            List.of(KeyAlgorithm.RSA_2048, KeyAlgorithm.EC_P256, KeyAlgorithm.ED25519);
+
+    private StartupTraining() {
+    }
+
+    static void main(String[] args) throws Exception {
+        String issuerKeyPath = null;
+        String issuerName = "CN=DefaultIssuer";
+        for (int i = 0; i < args.length; ++i) {
+            switch (args[i]) {
+                case "--issuer-key":
+                    issuerKeyPath = args[++i];
+                    break;
+                case "--issuer-name":
+                    issuerName = args[++i];
+                    break;
+                default:
+                    System.err.println("Unknown arg: " + args[i]);
+            }
+        }
+        if (issuerKeyPath == null) {
+            System.err.println("issuer-key is required");
+            return;
+        }
+        File issuerKeyFile = new File(issuerKeyPath);
+        Path dataDir = Files.createTempDirectory("rsakey-train");
+        EnumMap<KeyAlgorithm, KeyPool> pools = new EnumMap<>(KeyAlgorithm.class);
+        pools.put(KeyAlgorithm.DEFAULT, new KeyPool(KeyAlgorithm.DEFAULT, 0, 0, 0, 1, 0));
+        for (KeyAlgorithm algorithm : ALGORITHMS) pools.put(algorithm, new KeyPool(algorithm, 0, 0, 0, 1, 0));
+        KeyServer server = new KeyServer(0, () -> KeyServer.loadIssuerKey(issuerKeyFile), issuerName, 1, 1, pools,
+                new KeyCache(16L << 20, 0), new KeyLog(dataDir), new AdmissionControl(64, 0, 0, 16L << 20, 1, 1),
+                16, 10_000, 60_000, false, KeyServer.Engine.NIO);
+        Thread acceptor = new Thread(() -> {
+            try {
+                server.run();
+            } catch (Exception e) {
+                logger.log(Level.SEVERE, "Training server failed: " + e.getMessage(), e);
+            }
+        }, "Train-Acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        try {
+            InetSocketAddress address = new InetSocketAddress("localhost", server.port());
+            for (int round = 0; round < 2; ++round) {
+                for (KeyAlgorithm algorithm : ALGORITHMS) request(address, algorithm.key("train"));
+            }
+            logger.info("Training run finished");
+        } finally {
+            server.shutdown();
+            acceptor.join(1000);
+            try (Stream<Path> files = Files.walk(dataDir)) {
+                files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+            }
+        }
+    }
+
+    private static void request(InetSocketAddress address, String name) {
+        try (Socket s = new Socket()) {
+            s.connect(address, 5000);
+            OutputStream out = s.getOutputStream();
+            out.write(name.getBytes(StandardCharsets.US_ASCII));
+            out.write(0);
+            out.flush();
+            InputStream in = new BufferedInputStream(s.getInputStream());
+            int keyLen = Protocol.readInt(in, "keyPem length");
+            if (keyLen == Protocol.BUSY) throw new IOException("Server busy");
+            in.skipNBytes(keyLen);
+            Protocol.readBlock(in, "certPem", Protocol.MAX_BLOCK);
+        } catch (IOException e) {
+            // The archive is still worth having; it just misses whatever this request would have loaded.
+            logger.warning("Training request for '" + name + "' failed: " + e.getMessage());
+        }
+    }
+}
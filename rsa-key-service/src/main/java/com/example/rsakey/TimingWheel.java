@@ -0,0 +1,64 @@
+package com.example.rsakey;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Hashed timing wheel owned by one thread. Scheduling is O(1) and each tick only visits the entries in one slot.
+ * Deadlines further out than one revolution land in the last slot, so {@link #advance} may hand back an entry
+ * early; the caller re-checks the real deadline and schedules it again, which is also how a deadline that moved
+ * later is handled without removing anything from the wheel. An entry is never removed before its slot comes round,
+ * so a caller that schedules it again for an earlier deadline must skip the stale copy.
+ */
+final class TimingWheel<T> {
+    private final long tickNanos;
+    private final List<ArrayList<T>> slots;
+    private long cursor;
+    private int size;
+
+    TimingWheel(long tickMs, int slotCount, long nowNanos) {
+        this.tickNanos = tickMs * 1_000_000;
+        this.slots = new ArrayList<>(slotCount);
+        for (int i = 0; i < slotCount; ++i) slots.add(new ArrayList<>());
+        this.cursor = Math.floorDiv(nowNanos, tickNanos);
+    }
+
+    long tickMs() {
+        return tickNanos / 1_000_000;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Adds {@code item} to the slot for {@code deadlineNanos}, or the nearest one the wheel covers, and returns
+     * the time that slot comes round.
+     */
+    long schedule(T item, long deadlineNanos) {
+        long tick = Math.ceilDiv(deadlineNanos, tickNanos);
+        tick = Math.max(cursor + 1, Math.min(tick, cursor + slots.size()));
+        slots.get(Math.floorMod(tick, slots.size())).add(item);
+        size++;
+        return tick * tickNanos;
+    }
+
+    /**
+     * Hands every entry whose slot has come round by {@code nowNanos} to {@code due}, removing it from the wheel.
+     */
+    void advance(long nowNanos, Consumer<T> due) {
+        long now = Math.floorDiv(nowNanos, tickNanos);
+        long end = Math.min(now, cursor + slots.size());
+        while (cursor < end) {
+            cursor++;
+            ArrayList<T> slot = slots.get(Math.floorMod(cursor, slots.size()));
+            if (slot.isEmpty()) continue;
+            ArrayList<T> expired = new ArrayList<>(slot);
+            slot.clear();
+            size -= expired.size();
+            for (T item : expired) due.accept(item);
+        }
+        cursor = Math.max(cursor, now);
+    }
+}